@@ -0,0 +1,48 @@
+package edu.illinois.i3.emop.apps.pageevaluator.benchmarks;
+
+import edu.illinois.i3.emop.apps.pageevaluator.classifier.FastTokenClassifier;
+import edu.illinois.i3.emop.apps.pageevaluator.classifier.RegexTokenClassifier;
+import edu.illinois.i3.emop.apps.pageevaluator.classifier.TokenClassifier;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures token classification alone, for the tokens of a synthetic page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClassifierBenchmark {
+
+    @Param({ "fast", "regex" })
+    public String classifier;
+
+    @Param({ "0.05", "0.3" })
+    public double noise;
+
+    private String[] _tokens;
+    private TokenClassifier _classifier;
+
+    @Setup
+    public void setup() {
+        List<String> tokens = new ArrayList<>();
+        for (List<String> line : new SyntheticPageGenerator(42, 200, 10, noise).generateLines())
+            tokens.addAll(line);
+
+        _tokens = tokens.toArray(new String[tokens.size()]);
+        _classifier = classifier.equals("regex") ? new RegexTokenClassifier() : new FastTokenClassifier();
+    }
+
+    @Benchmark
+    public void classify(Blackhole blackhole) {
+        for (String token : _tokens)
+            blackhole.consume(_classifier.classify(token));
+    }
+}
@@ -0,0 +1,68 @@
+package edu.illinois.i3.emop.apps.pageevaluator.benchmarks;
+
+import edu.illinois.i3.emop.apps.pageevaluator.exceptions.PageParserException;
+import edu.illinois.i3.emop.apps.pageevaluator.hocr.HOCRPage;
+import edu.illinois.i3.emop.apps.pageevaluator.hocr.HOCRPageStats;
+import edu.illinois.i3.emop.apps.pageevaluator.hocr.HOCRStreamPage;
+import edu.illinois.i3.emop.apps.pageevaluator.hocr.HOCRToken;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.StringReader;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the stages of scoring an hOCR page: DOM parsing, token (line/word XPath) traversal,
+ * statistics calculation, and end to end with both parser engines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HOCRBenchmark {
+
+    @Param({ "50", "500" })
+    public int lines;
+
+    @Param({ "0.05", "0.3" })
+    public double noise;
+
+    private String _hocr;
+    private HOCRPage _page;
+
+    @Setup
+    public void setup() throws PageParserException {
+        _hocr = new SyntheticPageGenerator(42, lines, 10, noise).generateHOCR();
+        _page = HOCRPage.parse(new StringReader(_hocr));
+    }
+
+    @Benchmark
+    public HOCRPage parse() throws PageParserException {
+        return HOCRPage.parse(new StringReader(_hocr));
+    }
+
+    @Benchmark
+    public void traverseTokens(Blackhole blackhole) {
+        Iterator<HOCRToken> tokenIterator = _page.getTokenIterator();
+        while (tokenIterator.hasNext())
+            blackhole.consume(tokenIterator.next());
+    }
+
+    @Benchmark
+    public HOCRPageStats calculateStatistics() {
+        return _page.calculateStatistics();
+    }
+
+    @Benchmark
+    public HOCRPageStats endToEnd() throws PageParserException {
+        return HOCRPage.parse(new StringReader(_hocr)).calculateStatistics();
+    }
+
+    @Benchmark
+    public HOCRPageStats endToEndStreaming() throws PageParserException {
+        return HOCRStreamPage.parse(new StringReader(_hocr)).calculateStatistics();
+    }
+}
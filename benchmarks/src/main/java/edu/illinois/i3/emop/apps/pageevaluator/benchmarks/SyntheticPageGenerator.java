@@ -0,0 +1,199 @@
+package edu.illinois.i3.emop.apps.pageevaluator.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates deterministic synthetic early modern style OCR pages (as hOCR or plain text) of a configurable size and noise level.
+ * The same seed, line count, words per line and noise level always produce the same page.
+ */
+public class SyntheticPageGenerator {
+
+    private static final String[] WORDS = {
+            "the", "and", "of", "to", "that", "in", "which", "be", "it", "is", "as", "for", "with", "his", "this",
+            "haue", "vnto", "hath", "doth", "onely", "ye", "yt", "thy", "thou", "Lord", "King", "Kingdome", "Church",
+            "\u017faid", "mo\u017ft", "\u017fhall", "Chri\u017ft", "in\u017ftruction", "\u017fpirit", "be\u017ft",
+            "\ufb01rst", "of\ufb01ce", "\ufb02e\u017fh", "&c.", "&", "viz.", "i.", "ii.", "Anno", "Dom.", "1623",
+            "1.", "12", "3/4", "\u00a340", "xx.", "p.", "(", ")", ",", ".", ";", ":", "?", "-",
+            "afore\u017faid", "commandement", "Gouernment", "Parliament", "Maie\u017ftie", "Honourable", "Reuerend",
+            "Tre\u00e1tise", "vpon", "wherefore", "therein", "aboue\u017faid", "Apo\u017ftles", "Scripture", "A", "I", "O"
+    };
+
+    private static final String CONFUSABLES_FROM = "hecrnlftsuvimo";
+    private static final String CONFUSABLES_TO = "bcetui\u017ff\u017fnylnc";
+    private static final String GARBAGE = "~^*|\\#@!,.;:'\"_=+<>%/";
+
+    private final long _seed;
+    private final int _lineCount;
+    private final int _wordsPerLine;
+    private final double _noise;
+
+    /**
+     * @param seed The random seed
+     * @param lineCount The number of lines on the page
+     * @param wordsPerLine The average number of words per line
+     * @param noise The probability (0..1) that a word is corrupted by OCR-like errors
+     */
+    public SyntheticPageGenerator(long seed, int lineCount, int wordsPerLine, double noise) {
+        _seed = seed;
+        _lineCount = lineCount;
+        _wordsPerLine = wordsPerLine;
+        _noise = noise;
+    }
+
+    /**
+     * @return The words on each line of the page; a line ending in a hyphenated word continues on the next line
+     */
+    public List<List<String>> generateLines() {
+        Random random = new Random(_seed);
+        List<List<String>> lines = new ArrayList<>(_lineCount);
+
+        for (int l = 0; l < _lineCount; l++) {
+            int wordCount = Math.max(0, _wordsPerLine - 2 + random.nextInt(5));
+            List<String> line = new ArrayList<>(wordCount);
+
+            for (int w = 0; w < wordCount; w++) {
+                String word = WORDS[random.nextInt(WORDS.length)];
+                if (random.nextDouble() < _noise)
+                    word = corrupt(word, random);
+                line.add(word);
+            }
+
+            // break a long word across the line end
+            if (l < _lineCount - 1 && random.nextInt(8) == 0) {
+                String word = WORDS[random.nextInt(WORDS.length)];
+                if (word.length() > 5 && Character.isLetter(word.charAt(0))) {
+                    int split = 2 + random.nextInt(word.length() - 4);
+                    line.add(word.substring(0, split) + "-");
+                    lines.add(line);
+                    line = new ArrayList<>(wordCount);
+                    line.add(word.substring(split));
+                    l++;
+                }
+            }
+
+            lines.add(line);
+        }
+
+        return lines;
+    }
+
+    public String generateText() {
+        StringBuilder text = new StringBuilder();
+
+        for (List<String> line : generateLines()) {
+            for (int i = 0; i < line.size(); i++) {
+                if (i > 0)
+                    text.append(' ');
+                text.append(line.get(i));
+            }
+            text.append('\n');
+        }
+
+        return text.toString();
+    }
+
+    public String generateHOCR() {
+        StringBuilder hocr = new StringBuilder();
+        hocr.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<!DOCTYPE html PUBLIC \"-//W3C//DTD XHTML 1.0 Transitional//EN\" ")
+                .append("\"http://www.w3.org/TR/xhtml1/DTD/xhtml1-transitional.dtd\">\n")
+                .append("<html xmlns=\"http://www.w3.org/1999/xhtml\" xml:lang=\"en\" lang=\"en\">\n")
+                .append("<head>\n<title></title>\n")
+                .append("<meta http-equiv=\"Content-Type\" content=\"text/html;charset=utf-8\" />\n")
+                .append("<meta name=\"ocr-system\" content=\"tesseract 3.02\" />\n")
+                .append("<meta name=\"ocr-capabilities\" content=\"ocr_page ocr_carea ocr_par ocr_line ocrx_word\" />\n")
+                .append("</head>\n<body>\n")
+                .append("<div class=\"ocr_page\" id=\"page_1\" title=\"image &quot;page.tif&quot;; bbox 0 0 2500 3500; ppageno 0\">\n")
+                .append("<div class=\"ocr_carea\" id=\"block_1_1\" title=\"bbox 100 100 2400 3400\">\n")
+                .append("<p class=\"ocr_par\" dir=\"ltr\" id=\"par_1\" title=\"bbox 100 100 2400 3400\">\n");
+
+        Random random = new Random(_seed ^ 0x5DEECE66DL);
+        int wordId = 0;
+        int lineId = 0;
+        int y = 100;
+
+        for (List<String> line : generateLines()) {
+            lineId++;
+            hocr.append("<span class=\"ocr_line\" id=\"line_1_").append(lineId)
+                    .append("\" title=\"bbox 100 ").append(y).append(" 2400 ").append(y + 40).append("\">");
+
+            int x = 100;
+            for (String word : line) {
+                wordId++;
+                int width = 20 * word.length();
+                hocr.append("<span class=\"ocrx_word\" id=\"word_1_").append(wordId)
+                        .append("\" title=\"bbox ").append(x).append(' ').append(y).append(' ')
+                        .append(x + width).append(' ').append(y + 40)
+                        .append("; x_wconf ").append(40 + random.nextInt(60)).append("\">");
+                escape(word, hocr);
+                hocr.append("</span> ");
+                x += width + 15;
+            }
+
+            hocr.append("</span>\n");
+            y += 50;
+        }
+
+        hocr.append("</p>\n</div>\n</div>\n</body>\n</html>\n");
+
+        return hocr.toString();
+    }
+
+    private static String corrupt(String word, Random random) {
+        StringBuilder sb = new StringBuilder(word);
+
+        switch (random.nextInt(5)) {
+            case 0:
+                // confuse similar looking glyphs
+                for (int i = 0; i < sb.length(); i++) {
+                    int idx = CONFUSABLES_FROM.indexOf(sb.charAt(i));
+                    if (idx >= 0 && random.nextBoolean())
+                        sb.setCharAt(i, CONFUSABLES_TO.charAt(idx));
+                }
+                break;
+
+            case 1:
+                // specks read as punctuation
+                sb.insert(random.nextInt(sb.length() + 1), GARBAGE.charAt(random.nextInt(GARBAGE.length())));
+                break;
+
+            case 2:
+                // repeated characters
+                int pos = random.nextInt(sb.length());
+                int repeats = 3 + random.nextInt(3);
+                for (int i = 0; i < repeats; i++)
+                    sb.insert(pos, sb.charAt(pos));
+                break;
+
+            case 3:
+                // complete garbage
+                sb.setLength(0);
+                int length = 2 + random.nextInt(6);
+                for (int i = 0; i < length; i++)
+                    sb.append(GARBAGE.charAt(random.nextInt(GARBAGE.length())));
+                break;
+
+            default:
+                // digits mistaken for letters
+                sb.setCharAt(random.nextInt(sb.length()), (char) ('0' + random.nextInt(10)));
+                break;
+        }
+
+        return sb.toString();
+    }
+
+    private static void escape(String text, StringBuilder out) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&': out.append("&amp;"); break;
+                case '<': out.append("&lt;"); break;
+                case '>': out.append("&gt;"); break;
+                case '"': out.append("&quot;"); break;
+                default: out.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package edu.illinois.i3.emop.apps.pageevaluator.benchmarks;
+
+import edu.illinois.i3.emop.apps.pageevaluator.OCRToken;
+import edu.illinois.i3.emop.apps.pageevaluator.exceptions.PageParserException;
+import edu.illinois.i3.emop.apps.pageevaluator.txt.TxtPage;
+import edu.illinois.i3.emop.apps.pageevaluator.txt.TxtPageStats;
+import opennlp.tools.tokenize.SimpleTokenizer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.StringReader;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the stages of scoring a TXT page: parsing (line reading, hyphen joining and tokenization with the SimpleTokenizer),
+ * token traversal, statistics calculation, and end to end.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TxtBenchmark {
+
+    @Param({ "50", "500" })
+    public int lines;
+
+    @Param({ "0.05", "0.3" })
+    public double noise;
+
+    private String _text;
+    private TxtPage _page;
+
+    @Setup
+    public void setup() throws PageParserException {
+        _text = new SyntheticPageGenerator(42, lines, 10, noise).generateText();
+        _page = TxtPage.parse(new StringReader(_text), "page", SimpleTokenizer.INSTANCE);
+    }
+
+    @Benchmark
+    public TxtPage parse() throws PageParserException {
+        return TxtPage.parse(new StringReader(_text), "page", SimpleTokenizer.INSTANCE);
+    }
+
+    @Benchmark
+    public void traverseTokens(Blackhole blackhole) {
+        Iterator<? extends OCRToken> tokenIterator = _page.getTokenIterator();
+        while (tokenIterator.hasNext())
+            blackhole.consume(tokenIterator.next());
+    }
+
+    @Benchmark
+    public TxtPageStats calculateStatistics() {
+        return _page.calculateStatistics();
+    }
+
+    @Benchmark
+    public TxtPageStats endToEnd() throws PageParserException {
+        return TxtPage.parse(new StringReader(_text), "page", SimpleTokenizer.INSTANCE).calculateStatistics();
+    }
+}
@@ -1,19 +1,57 @@
 package edu.illinois.i3.emop.apps.pageevaluator;
 
 import com.google.common.base.Charsets;
-import com.google.common.io.Files;
+import com.google.common.base.Joiner;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Lists;
 import com.martiansoftware.jsap.*;
 import com.martiansoftware.jsap.stringparsers.EnumeratedStringParser;
 import com.martiansoftware.jsap.stringparsers.FileStringParser;
-import edu.illinois.i3.emop.apps.pageevaluator.exceptions.PageParserException;
-import edu.illinois.i3.emop.apps.pageevaluator.hocr.HOCRPage;
-import edu.illinois.i3.emop.apps.pageevaluator.txt.TxtPage;
-import opennlp.tools.tokenize.SimpleTokenizer;
+import edu.illinois.i3.emop.apps.pageevaluator.batch.BatchProcessor;
+import edu.illinois.i3.emop.apps.pageevaluator.batch.BatchResultWriter;
+import edu.illinois.i3.emop.apps.pageevaluator.batch.BinaryResultReader;
+import edu.illinois.i3.emop.apps.pageevaluator.batch.BinaryResultWriter;
+import edu.illinois.i3.emop.apps.pageevaluator.batch.JournalingResultWriter;
+import edu.illinois.i3.emop.apps.pageevaluator.batch.PageArchive;
+import edu.illinois.i3.emop.apps.pageevaluator.batch.PageInputs;
+import edu.illinois.i3.emop.apps.pageevaluator.batch.PageShards;
+import edu.illinois.i3.emop.apps.pageevaluator.batch.PipelinedBatchProcessor;
+import edu.illinois.i3.emop.apps.pageevaluator.batch.ProgressJournal;
+import edu.illinois.i3.emop.apps.pageevaluator.batch.ResultMerger;
+import edu.illinois.i3.emop.apps.pageevaluator.batch.ResultWriter;
+import edu.illinois.i3.emop.apps.pageevaluator.batch.ScoreAggregator;
+import edu.illinois.i3.emop.apps.pageevaluator.batch.TokenLabelWriter;
+import edu.illinois.i3.emop.apps.pageevaluator.cache.ResultCache;
+import edu.illinois.i3.emop.apps.pageevaluator.classifier.BoundedTokenClassifier;
+import edu.illinois.i3.emop.apps.pageevaluator.classifier.CachingTokenClassifier;
+import edu.illinois.i3.emop.apps.pageevaluator.classifier.RegexTokenClassifier;
+import edu.illinois.i3.emop.apps.pageevaluator.collector.LexiconCollector;
+import edu.illinois.i3.emop.apps.pageevaluator.collector.LongSLigatureCollector;
+import edu.illinois.i3.emop.apps.pageevaluator.collector.StatisticsCollector;
+import edu.illinois.i3.emop.apps.pageevaluator.collector.TokenLabelCollector;
+import edu.illinois.i3.emop.apps.pageevaluator.collector.TokenLengthCollector;
+import edu.illinois.i3.emop.apps.pageevaluator.collector.WordConfidenceCollector;
+import edu.illinois.i3.emop.apps.pageevaluator.lexicon.Lexicon;
+import edu.illinois.i3.emop.apps.pageevaluator.lexicon.LexiconBuilder;
+import edu.illinois.i3.emop.apps.pageevaluator.metrics.PrometheusFileExporter;
+import edu.illinois.i3.emop.apps.pageevaluator.metrics.ScoringMetrics;
+import edu.illinois.i3.emop.apps.pageevaluator.sampling.SamplingPolicy;
+import edu.illinois.i3.emop.apps.pageevaluator.sampling.ScoreEstimate;
+import edu.illinois.i3.emop.apps.pageevaluator.server.ScoringServer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.Reader;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 
 public class Main {
 
@@ -23,23 +61,109 @@ public class Main {
         TXT, HOCR, GALEXML
     }
 
+    public enum ParserEngine {
+        STANDARD, STREAMING
+    }
+
     public static void main(String[] args) {
         try {
             JSAPResult cmdLine = parseArguments(args);
+            if (cmdLine.contains("readResults")) {
+                readResults(cmdLine);
+                return;
+            }
+
+            if (cmdLine.getBoolean("mergeResults")) {
+                mergeResults(cmdLine);
+                return;
+            }
+
+            if (cmdLine.contains("buildLexicon")) {
+                buildLexicon(cmdLine.getFile("buildLexicon"), cmdLine.getFile("output"));
+                return;
+            }
+
             DocumentFormat format = DocumentFormat.valueOf(cmdLine.getString("format").toUpperCase());
-            File pageOcrFile = cmdLine.getFile("pageOcrFile");
             boolean quiet = cmdLine.getBoolean("quiet");
+            ParserEngine engine = ParserEngine.valueOf(cmdLine.getString("parser").toUpperCase());
+            PageScorer scorer = new PageScorer(format, engine);
+            if (cmdLine.getString("classifier").equals("regex"))
+                scorer.setTokenClassifier(new RegexTokenClassifier());
+            if (cmdLine.getInt("maxTokenLength") > 0)
+                scorer.setTokenClassifier(new BoundedTokenClassifier(scorer.getTokenClassifier(), cmdLine.getInt("maxTokenLength")));
+            if (cmdLine.getInt("tokenCacheMB") > 0)
+                scorer.setTokenClassifier(new CachingTokenClassifier(scorer.getTokenClassifier(), cmdLine.getInt("tokenCacheMB") * (1L << 20)));
+            scorer.setPageChunkSize(cmdLine.getInt("pageChunkSize"));
+            scorer.setPageTimeBudget(cmdLine.getLong("pageTimeBudget"));
+            List<StatisticsCollector> statisticsCollectors = getStatisticsCollectors(cmdLine.getStringArray("collectors"));
+            if (cmdLine.contains("lexicon"))
+                statisticsCollectors.add(new LexiconCollector(Lexicon.open(cmdLine.getFile("lexicon"))));
+            scorer.setStatisticsCollectors(statisticsCollectors);
+            if (cmdLine.contains("sampleTolerance"))
+                scorer.setSamplingPolicy(new SamplingPolicy(cmdLine.getDouble("sampleTolerance"),
+                        cmdLine.contains("sampleThreshold") ? cmdLine.getDouble("sampleThreshold") : Double.NaN,
+                        cmdLine.getLong("sampleSeed")));
+            if (cmdLine.contains("cacheDir"))
+                scorer.setResultCache(new ResultCache(cmdLine.getFile("cacheDir"), cmdLine.getInt("cacheMaxEntries")));
+
+            if (cmdLine.contains("metricsFile"))
+                startMetricsExport(cmdLine.getFile("metricsFile"), cmdLine.getInt("metricsInterval"));
+
+            if (cmdLine.getBoolean("server")) {
+                int threads = cmdLine.contains("threads") ? cmdLine.getInt("threads") : Runtime.getRuntime().availableProcessors();
+                final ScoringServer server = new ScoringServer(cmdLine.getInt("port"), threads, scorer);
+                Runtime.getRuntime().addShutdownHook(new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            server.stop();
+                        }
+                        catch (InterruptedException ignored) { }
+                    }
+                });
+                ScoringMetrics.getInstance().registerMBean();
+                server.start();
+                return;
+            }
+
+            String[] inputs = cmdLine.getStringArray("pageOcrFile");
+            // archives always hold many pages
+            boolean archiveInput = inputs.length == 1 && PageArchive.isArchive(new File(inputs[0]));
+
+            if (cmdLine.getBoolean("batch") || cmdLine.getBoolean("volume") || archiveInput) {
+                // not for single pages, whose runs would be slowed down by starting the platform MBean server
+                ScoringMetrics.getInstance().registerMBean();
+                int failedCount = processBatch(scorer, cmdLine, quiet);
+                if (failedCount > 0)
+                    System.exit(2);
+                return;
+            }
+
+            if (inputs.length != 1 || !new File(inputs[0]).isFile())
+                throw new IllegalArgumentException("Expected exactly one existing page OCR file (use --batch to score multiple pages)");
+            File pageOcrFile = new File(inputs[0]);
 
             if (!quiet)
                 log.info("Processing {}: {}", format, pageOcrFile);
 
-            Reader pageReader = Files.newReader(pageOcrFile, Charsets.UTF_8);
-            OCRPageStats pageStats = processDocument(pageReader, pageOcrFile.getName(), format);
+            OCRPageStats pageStats = scorer.score(pageOcrFile);
             float correctableScore = pageStats.getCorrectableScore();
             float qualityScore = pageStats.getQualityScore();
 
-            if (!quiet)
+            ScoreEstimate estimate = pageStats.getEstimate();
+
+            if (!quiet) {
                 log.info("Scores: correctable={}, quality={}", correctableScore, qualityScore);
+                if (estimate != null)
+                    log.info("Estimated from {}% of the page: correctable in [{}, {}], quality in [{}, {}]",
+                            String.format("%.1f", 100 * estimate.getExaminedFraction()),
+                            estimate.getCorrectableLow(), estimate.getCorrectableHigh(),
+                            estimate.getQualityLow(), estimate.getQualityHigh());
+            }
+            else if (estimate != null)
+                System.out.println(String.format(Locale.ROOT, "%f,%f,%f,%f,%f,%f,%f", correctableScore, qualityScore,
+                        estimate.getCorrectableLow(), estimate.getCorrectableHigh(),
+                        estimate.getQualityLow(), estimate.getQualityHigh(), estimate.getExaminedFraction()));
             else
                 System.out.println(String.format("%f,%f", correctableScore, qualityScore));
         }
@@ -49,6 +173,245 @@ public class Main {
         }
     }
 
+    private static void startMetricsExport(File metricsFile, int intervalSeconds) {
+        final PrometheusFileExporter metricsExporter =
+                new PrometheusFileExporter(ScoringMetrics.getInstance(), metricsFile, intervalSeconds);
+        metricsExporter.start();
+
+        // write the final metrics on exit
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                try {
+                    metricsExporter.stop();
+                }
+                catch (Exception e) {
+                    e.printStackTrace(System.err);
+                }
+            }
+        });
+    }
+
+    private static int processBatch(PageScorer scorer, JSAPResult cmdLine, boolean quiet) throws IOException, InterruptedException {
+        Iterable<File> pageFiles = PageInputs.resolve(
+                Arrays.asList(cmdLine.getStringArray("pageOcrFile")), cmdLine.getFile("manifest"));
+        int threads = cmdLine.contains("threads") ? cmdLine.getInt("threads") : Runtime.getRuntime().availableProcessors();
+        File outputFile = cmdLine.getFile("output");
+
+        if (cmdLine.contains("shard")) {
+            String[] shard = cmdLine.getString("shard").split("/");
+            if (shard.length != 2)
+                throw new IllegalArgumentException("The shard must be given as INDEX/COUNT, e.g. 0/4");
+
+            int shardIndex = Integer.parseInt(shard[0].trim());
+            int shardCount = Integer.parseInt(shard[1].trim());
+            List<File> shardFiles = PageShards.select(pageFiles, shardIndex, shardCount);
+            if (!quiet)
+                log.info("Shard {}/{}: {} input files", shardIndex, shardCount, shardFiles.size());
+            pageFiles = shardFiles;
+        }
+
+        File tokenLabelFile = cmdLine.getFile("tokenLabels");
+        if (tokenLabelFile != null) {
+            if (cmdLine.getBoolean("volume") || cmdLine.contains("journal") || scorer.getSamplingPolicy() != null)
+                throw new IllegalArgumentException("Token labels cannot be exported in volume mode, with a journal or when sampling");
+
+            List<StatisticsCollector> statisticsCollectors = Lists.newArrayList(scorer.getStatisticsCollectors());
+            statisticsCollectors.add(new TokenLabelCollector());
+            scorer.setStatisticsCollectors(statisticsCollectors);
+        }
+
+        // the pages completed by previous runs would be missing from the aggregates
+        if (cmdLine.contains("aggregateReport") && cmdLine.contains("journal"))
+            throw new IllegalArgumentException("Aggregate reports cannot be written with a journal");
+
+        // resuming a journaled run: the results written after its last checkpoint are dropped
+        ProgressJournal journal = null;
+        if (cmdLine.contains("journal")) {
+            journal = ProgressJournal.open(cmdLine.getFile("journal"), outputFile);
+            if (outputFile != null)
+                journal.restoreOutput(outputFile);
+        }
+
+        ResultWriter resultWriter;
+        if (cmdLine.getString("outputFormat").equals("binary"))
+            resultWriter = outputFile != null ? BinaryResultWriter.open(outputFile) :
+                    new BinaryResultWriter(new BufferedOutputStream(System.out, 1 << 16), BinaryResultWriter.DEFAULT_BLOCK_SIZE);
+        else
+            resultWriter = openCsvResultWriter(outputFile, scorer.getStatisticsCollectors(), scorer.getSamplingPolicy() != null,
+                    journal != null && outputFile != null && outputFile.length() > 0);
+
+        ScoreAggregator scoreAggregator = null;
+        if (cmdLine.contains("aggregateReport"))
+            resultWriter = scoreAggregator = new ScoreAggregator(resultWriter, getGroupBys(cmdLine.getStringArray("aggregateBy")),
+                    cmdLine.getInt("aggregateMaxGroups"), cmdLine.getBoolean("volume"));
+        if (tokenLabelFile != null)
+            resultWriter = new TokenLabelWriter(resultWriter, new BufferedOutputStream(new FileOutputStream(tokenLabelFile), 1 << 16));
+        if (journal != null)
+            resultWriter = new JournalingResultWriter(resultWriter, journal, outputFile);
+
+        try {
+            BatchProcessor batchProcessor = cmdLine.getBoolean("pipeline") ?
+                    new PipelinedBatchProcessor(scorer, threads, cmdLine.getInt("readerThreads"),
+                            cmdLine.contains("queueCapacity") ? cmdLine.getInt("queueCapacity") : threads * 4, resultWriter) :
+                    new BatchProcessor(scorer, threads, resultWriter);
+            batchProcessor.setVolumeMode(cmdLine.getBoolean("volume"));
+            batchProcessor.setJournal(journal);
+            int failedCount = batchProcessor.run(pageFiles);
+
+            if (!quiet && journal != null)
+                log.info("Skipped {} pages completed by previous runs", batchProcessor.getSkippedCount());
+
+            if (scoreAggregator != null) {
+                File reportFile = cmdLine.getFile("aggregateReport");
+                Writer reportWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(reportFile), Charsets.UTF_8));
+                try {
+                    scoreAggregator.writeReport(reportWriter);
+                }
+                finally {
+                    reportWriter.close();
+                }
+                if (!quiet)
+                    log.info("Wrote the aggregates of {} groups to {}", scoreAggregator.getGroups().size(), reportFile);
+            }
+
+            if (!quiet)
+                log.info("Processed {} {} pages ({} failed) in {} seconds ({} pages/sec) using {} threads",
+                        batchProcessor.getProcessedCount(), scorer.getFormat(), failedCount,
+                        String.format("%.2f", batchProcessor.getElapsedSeconds()),
+                        String.format("%.1f", batchProcessor.getPagesPerSecond()), threads);
+
+            if (!quiet && batchProcessor instanceof PipelinedBatchProcessor)
+                log.info("Pipeline queue depths (mean/capacity): {}",
+                        Joiner.on(", ").join(((PipelinedBatchProcessor) batchProcessor).getQueueStats()));
+
+            ResultCache resultCache = scorer.getResultCache();
+            if (!quiet && resultCache != null)
+                log.info("Result cache: {} hits, {} misses, {} evictions, {} entries",
+                        resultCache.getHitCount(), resultCache.getMissCount(),
+                        resultCache.getEvictionCount(), resultCache.getSize());
+
+            if (!quiet && scorer.getTokenClassifier() instanceof CachingTokenClassifier) {
+                CachingTokenClassifier tokenCache = (CachingTokenClassifier) scorer.getTokenClassifier();
+                CacheStats stats = tokenCache.getStats();
+                log.info("Token cache: {} hit rate ({} hits, {} misses), {} evictions, {} entries",
+                        String.format("%.3f", stats.hitRate()), stats.hitCount(), stats.missCount(),
+                        stats.evictionCount(), tokenCache.getSize());
+            }
+
+            return failedCount;
+        }
+        finally {
+            if (outputFile != null)
+                resultWriter.close();
+            else
+                resultWriter.flush();
+        }
+    }
+
+    private static List<StatisticsCollector> getStatisticsCollectors(String[] names) {
+        List<StatisticsCollector> collectors = Lists.newArrayList();
+        for (String name : names) {
+            if (name.equals("confidence"))
+                collectors.add(new WordConfidenceCollector());
+            else if (name.equals("lengths"))
+                collectors.add(new TokenLengthCollector());
+            else if (name.equals("longs"))
+                collectors.add(new LongSLigatureCollector());
+        }
+
+        return collectors;
+    }
+
+    private static List<ScoreAggregator.GroupBy> getGroupBys(String[] names) {
+        List<ScoreAggregator.GroupBy> groupBys = Lists.newArrayList();
+        for (String name : names)
+            groupBys.add(ScoreAggregator.GroupBy.valueOf(name.toUpperCase(Locale.ROOT)));
+
+        return groupBys;
+    }
+
+    private static void buildLexicon(File wordListFile, File lexiconFile) throws IOException {
+        if (lexiconFile == null)
+            throw new IllegalArgumentException("The lexicon file must be given with --output");
+
+        LexiconBuilder lexiconBuilder = new LexiconBuilder();
+        lexiconBuilder.addWords(wordListFile);
+        lexiconBuilder.write(lexiconFile);
+
+        log.info("Wrote {} words to {}", lexiconBuilder.getWordCount(), lexiconFile);
+    }
+
+    private static BatchResultWriter openCsvResultWriter(File outputFile, List<StatisticsCollector> statisticsCollectors,
+                                                         boolean estimateColumns, boolean append) throws IOException {
+        Writer writer = outputFile != null ?
+                new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFile, append), Charsets.UTF_8)) :
+                new BufferedWriter(new OutputStreamWriter(System.out, Charsets.UTF_8));
+
+        BatchResultWriter resultWriter = new BatchResultWriter(writer, statisticsCollectors);
+        resultWriter.setEstimateColumns(estimateColumns);
+        if (!append)
+            resultWriter.writeHeader();
+
+        return resultWriter;
+    }
+
+    // prints the rows of a binary result file as CSV, optionally keeping only the pages within a quality score range
+    private static void readResults(JSAPResult cmdLine) throws IOException {
+        File resultFile = cmdLine.getFile("readResults");
+        File outputFile = cmdLine.getFile("output");
+        boolean filtered = cmdLine.contains("minQuality") || cmdLine.contains("maxQuality");
+        float minQuality = cmdLine.contains("minQuality") ? cmdLine.getFloat("minQuality") : Float.NEGATIVE_INFINITY;
+        float maxQuality = cmdLine.contains("maxQuality") ? cmdLine.getFloat("maxQuality") : Float.POSITIVE_INFINITY;
+
+        BinaryResultReader resultReader = BinaryResultReader.open(resultFile);
+        BatchResultWriter resultWriter = openCsvResultWriter(outputFile, Collections.<StatisticsCollector>emptyList(), false, false);
+        try {
+            while (resultReader.hasNext()) {
+                BinaryResultReader.Block block = resultReader.next();
+                float[] qualityScores = block.getQualityScores();
+                for (int row = 0; row < block.getRowCount(); row++) {
+                    if (block.isFailed(row)) {
+                        if (!filtered)
+                            resultWriter.writeFailure(block.getId(row), new Exception(block.getError(row)));
+                    }
+                    else if (qualityScores[row] >= minQuality && qualityScores[row] <= maxQuality)
+                        resultWriter.writeResult(block.getId(row), block.getPageStats(row));
+                }
+            }
+
+            if (resultReader.isTruncated())
+                log.warn("{} ends with an incomplete block, which was ignored", resultFile);
+        }
+        finally {
+            resultReader.close();
+            if (outputFile != null)
+                resultWriter.close();
+            else
+                resultWriter.flush();
+        }
+    }
+
+    // merges the result files of the shards of a corpus, and prints the statistics of each shard and of the corpus
+    private static void mergeResults(JSAPResult cmdLine) throws IOException {
+        File outputFile = cmdLine.getFile("output");
+        if (outputFile == null)
+            throw new IllegalArgumentException("The merged result file must be given with --output");
+
+        List<File> resultFiles = Lists.newArrayList();
+        for (String resultFile : cmdLine.getStringArray("pageOcrFile"))
+            resultFiles.add(new File(resultFile));
+
+        List<ResultMerger.Summary> summaries = ResultMerger.merge(resultFiles, outputFile);
+
+        System.out.println("name,pages,failed,tokenCount,correctable,quality");
+        for (ResultMerger.Summary summary : summaries) {
+            OCRPageStats pageStats = summary.getPageStats();
+            System.out.println(String.format(Locale.ROOT, "%s,%d,%d,%d,%f,%f", summary.getName(), summary.getPageCount(),
+                    summary.getFailedCount(), pageStats.getTokenCount(), pageStats.getCorrectableScore(), pageStats.getQualityScore()));
+        }
+    }
+
     private static Parameter[] getApplicationParameters() {
         Parameter format = new FlaggedOption("format")
                 .setStringParser(EnumeratedStringParser.getParser("txt;hocr;galexml"))
@@ -56,39 +419,264 @@ public class Main {
                 .setShortFlag('f')
                 .setHelp("Specifies the format of the page OCR file");
 
+        Parameter parser = new FlaggedOption("parser")
+                .setStringParser(EnumeratedStringParser.getParser("standard;streaming"))
+                .setDefault("standard")
+                .setShortFlag('p')
+                .setLongFlag("parser")
+                .setHelp("Specifies the parser engine: 'standard' reads the whole page into memory (as a DOM for hOCR), " +
+                        "'streaming' reads the page as a single forward stream of XML events or lines");
+
+        Parameter classifier = new FlaggedOption("classifier")
+                .setStringParser(EnumeratedStringParser.getParser("fast;regex"))
+                .setDefault("fast")
+                .setLongFlag("classifier")
+                .setHelp("Specifies the token classifier: 'fast' (single pass, no regular expressions) " +
+                        "or 'regex' (the reference implementation of the classification rules)");
+
+        Parameter tokenCacheMB = new FlaggedOption("tokenCacheMB")
+                .setStringParser(JSAP.INTEGER_PARSER)
+                .setDefault("0")
+                .setLongFlag("token-cache-mb")
+                .setHelp("Caches the categories of classified tokens in up to this many megabytes of memory, " +
+                        "so that repeated tokens are classified by a single lookup (default: 0, no cache)");
+
+        Parameter collectors = new FlaggedOption("collectors")
+                .setStringParser(EnumeratedStringParser.getParser("confidence;lengths;longs"))
+                .setList(true)
+                .setListSeparator(',')
+                .setLongFlag("collectors")
+                .setHelp("Additional statistics collected in the same pass as the scores and written as extra CSV columns " +
+                        "in batch mode: 'confidence' (mean and minimum hOCR word confidence), 'lengths' (token length histogram), " +
+                        "'longs' (rates of tokens with a long s or a ligature)");
+
+        Parameter sampleTolerance = new FlaggedOption("sampleTolerance")
+                .setStringParser(JSAP.DOUBLE_PARSER)
+                .setLongFlag("sample-tolerance")
+                .setHelp("Enables approximate scoring for triage: the lines of each page are scored in random order until the " +
+                        "95% confidence intervals of both scores are narrower than this tolerance (or clear --sample-threshold). " +
+                        "The interval bounds and the fraction of the page examined are printed after the scores");
+
+        Parameter sampleThreshold = new FlaggedOption("sampleThreshold")
+                .setStringParser(JSAP.DOUBLE_PARSER)
+                .setLongFlag("sample-threshold")
+                .setHelp("With --sample-tolerance, also stops sampling a page once the interval of its correctable score " +
+                        "lies entirely above or below this threshold");
+
+        Parameter sampleSeed = new FlaggedOption("sampleSeed")
+                .setStringParser(JSAP.LONG_PARSER)
+                .setDefault("0")
+                .setLongFlag("sample-seed")
+                .setHelp("The seed of the random order of the sampled lines");
+
+        Parameter lexicon = new FlaggedOption("lexicon")
+                .setStringParser(
+                        FileStringParser.getParser()
+                                .setMustBeFile(true)
+                                .setMustExist(true))
+                .setLongFlag("lexicon")
+                .setHelp("A lexicon file (built with --build-lexicon): the word tokens in the lexicon, and those one edit away " +
+                        "from a word of the lexicon, are counted in extra CSV columns in batch mode");
+
+        Parameter buildLexicon = new FlaggedOption("buildLexicon")
+                .setStringParser(
+                        FileStringParser.getParser()
+                                .setMustBeFile(true)
+                                .setMustExist(true))
+                .setLongFlag("build-lexicon")
+                .setHelp("Builds a lexicon file (written to --output) from a word list, with one word per line");
+
+        Parameter pageChunkSize = new FlaggedOption("pageChunkSize")
+                .setStringParser(JSAP.INTEGER_PARSER)
+                .setDefault("0")
+                .setLongFlag("page-chunk-size")
+                .setHelp("Scores pages with more than this number of tokens in parallel chunks of about this size " +
+                        "(default: 0, pages are scored sequentially)");
+
+        Parameter maxTokenLength = new FlaggedOption("maxTokenLength")
+                .setStringParser(JSAP.INTEGER_PARSER)
+                .setDefault("0")
+                .setLongFlag("max-token-length")
+                .setHelp("Classifies the tokens longer than this number of characters in a single linear pass, whatever " +
+                        "the classifier, so that pathological tokens cannot stall a worker (default: 0, no limit)");
+
+        Parameter pageTimeBudget = new FlaggedOption("pageTimeBudget")
+                .setStringParser(JSAP.LONG_PARSER)
+                .setDefault("0")
+                .setLongFlag("page-time-budget")
+                .setHelp("Abandons the pages that take longer than this number of milliseconds to score, which are reported " +
+                        "as failed (in batch mode, with the budget as their error) (default: 0, no budget)");
+
+        Parameter cacheDir = new FlaggedOption("cacheDir")
+                .setStringParser(FileStringParser.getParser())
+                .setLongFlag("cache-dir")
+                .setHelp("A directory caching the statistics of scored pages, so that unchanged pages are not scored again");
+
+        Parameter cacheMaxEntries = new FlaggedOption("cacheMaxEntries")
+                .setStringParser(JSAP.INTEGER_PARSER)
+                .setDefault("1000000")
+                .setLongFlag("cache-max-entries")
+                .setHelp("The maximum number of pages kept in the cache (least recently used pages are evicted first)");
+
+        Parameter metricsFile = new FlaggedOption("metricsFile")
+                .setStringParser(FileStringParser.getParser())
+                .setLongFlag("metrics-file")
+                .setHelp("A file to periodically write the scoring metrics to, in the Prometheus text format " +
+                        "(the metrics are also available through JMX)");
+
+        Parameter metricsInterval = new FlaggedOption("metricsInterval")
+                .setStringParser(JSAP.INTEGER_PARSER)
+                .setDefault("15")
+                .setLongFlag("metrics-interval")
+                .setHelp("The number of seconds between two writes of the metrics file");
+
         Parameter quiet = new Switch("quiet")
                 .setShortFlag('q')
                 .setDefault("false")
                 .setHelp("Enables quiet mode - only page scores are printed, separated by a comma");
 
-        Parameter pageOcrFile = new UnflaggedOption("pageOcrFile")
+        Parameter batch = new Switch("batch")
+                .setShortFlag('b')
+                .setLongFlag("batch")
+                .setDefault("false")
+                .setHelp("Enables batch mode - scores all given pages and prints one CSV line per page " +
+                        "with the page id, both scores and the page statistics counts");
+
+        Parameter volume = new Switch("volume")
+                .setLongFlag("volume")
+                .setDefault("false")
+                .setHelp("Enables volume mode - like batch mode, but scores every page of the given hOCR or Gale XML files, " +
+                        "printing one CSV line per page (with id 'file#pageId') followed by one line for the whole volume");
+
+        Parameter server = new Switch("server")
+                .setLongFlag("server")
+                .setDefault("false")
+                .setHelp("Runs as a long-lived scoring server on the loopback interface, accepting requests like " +
+                        "'POST /score?format=hocr' (page in the body) or 'GET /score?format=txt&path=<page file>'");
+
+        Parameter port = new FlaggedOption("port")
+                .setStringParser(JSAP.INTEGER_PARSER)
+                .setDefault("8765")
+                .setLongFlag("port")
+                .setHelp("The port the scoring server listens on");
+
+        Parameter threads = new FlaggedOption("threads")
+                .setStringParser(JSAP.INTEGER_PARSER)
+                .setShortFlag('t')
+                .setLongFlag("threads")
+                .setHelp("The number of worker threads used in batch and server mode (default: number of available processors)");
+
+        Parameter pipeline = new Switch("pipeline")
+                .setLongFlag("pipeline")
+                .setDefault("false")
+                .setHelp("Scores batches in a pipeline of stages (reading, parsing, scoring, writing) connected by bounded " +
+                        "queues, so that reading page files overlaps with scoring; the queue depths are reported at the end");
+
+        Parameter readerThreads = new FlaggedOption("readerThreads")
+                .setStringParser(JSAP.INTEGER_PARSER)
+                .setDefault("4")
+                .setLongFlag("reader-threads")
+                .setHelp("The number of threads reading page files in pipeline mode");
+
+        Parameter queueCapacity = new FlaggedOption("queueCapacity")
+                .setStringParser(JSAP.INTEGER_PARSER)
+                .setLongFlag("queue-capacity")
+                .setHelp("The capacity of each queue between two stages in pipeline mode (default: 4 per worker thread)");
+
+        Parameter manifest = new FlaggedOption("manifest")
                 .setStringParser(
                         FileStringParser.getParser()
                                 .setMustBeFile(true)
                                 .setMustExist(true))
-                .setRequired(true)
-                .setHelp("The page OCR file");
+                .setShortFlag('m')
+                .setLongFlag("manifest")
+                .setHelp("A file listing the page OCR files to score in batch mode, one per line");
 
-        return new Parameter[] { format, quiet, pageOcrFile };
-    }
+        Parameter output = new FlaggedOption("output")
+                .setStringParser(FileStringParser.getParser())
+                .setShortFlag('o')
+                .setLongFlag("output")
+                .setHelp("The file to write batch mode results to (default: standard output)");
 
-    private static OCRPageStats processDocument(Reader pageReader, String id, DocumentFormat format) throws PageParserException {
-        OCRPage ocrPage;
+        Parameter journal = new FlaggedOption("journal")
+                .setStringParser(FileStringParser.getParser())
+                .setLongFlag("journal")
+                .setHelp("A journal of the pages completed in batch mode: a run interrupted before completion is resumed " +
+                        "by running it again with the same journal and output, skipping the pages already scored");
 
-        switch (format) {
-            case HOCR:
-                ocrPage = HOCRPage.parse(pageReader);
-                break;
+        Parameter outputFormat = new FlaggedOption("outputFormat")
+                .setStringParser(EnumeratedStringParser.getParser("csv;binary"))
+                .setDefault("csv")
+                .setLongFlag("output-format")
+                .setHelp("The format of batch mode results: 'csv', or 'binary' (a compact column oriented file, written in blocks " +
+                        "and appended to if it exists, which can be read back with --read-results)");
 
-            case TXT:
-                ocrPage = TxtPage.parse(pageReader, id, SimpleTokenizer.INSTANCE);
-                break;
+        Parameter readResults = new FlaggedOption("readResults")
+                .setStringParser(
+                        FileStringParser.getParser()
+                                .setMustBeFile(true)
+                                .setMustExist(true))
+                .setLongFlag("read-results")
+                .setHelp("Prints the results stored in a binary result file as CSV (to the --output file, if given)");
 
-            default:
-                throw new RuntimeException("Unsupported format: " + format);
-        }
+        Parameter tokenLabels = new FlaggedOption("tokenLabels")
+                .setStringParser(FileStringParser.getParser())
+                .setLongFlag("token-labels")
+                .setHelp("In batch mode, also writes the category of every token of the scored pages to this file, in a compact " +
+                        "binary format (one record per page, with the hOCR word id or index and the category code of each token)");
+
+        Parameter aggregateReport = new FlaggedOption("aggregateReport")
+                .setStringParser(FileStringParser.getParser())
+                .setLongFlag("aggregate-report")
+                .setHelp("In batch mode, also aggregates the results by --aggregate-by group and writes, at the end of the run, " +
+                        "the page counts, summed up counts and score percentiles of each group (and of the corpus) to this CSV file " +
+                        "(not with --journal)");
+
+        Parameter aggregateBy = new FlaggedOption("aggregateBy")
+                .setStringParser(EnumeratedStringParser.getParser("engine;volume;directory"))
+                .setList(true)
+                .setListSeparator(',')
+                .setDefault("engine,volume,directory")
+                .setLongFlag("aggregate-by")
+                .setHelp("The groups of the --aggregate-report, a comma separated list of 'engine' (the hOCR OCR engine), " +
+                        "'volume' (the volume file in volume mode, the archive, or else the directory of the page) and 'directory'");
+
+        Parameter aggregateMaxGroups = new FlaggedOption("aggregateMaxGroups")
+                .setStringParser(JSAP.INTEGER_PARSER)
+                .setDefault("1000")
+                .setLongFlag("aggregate-max-groups")
+                .setHelp("The maximum number of groups of each kind in the --aggregate-report; the pages of further groups " +
+                        "are aggregated in an '(other)' group, so that memory use is bounded");
+
+        Parameter shard = new FlaggedOption("shard")
+                .setStringParser(JSAP.STRING_PARSER)
+                .setLongFlag("shard")
+                .setHelp("In batch mode, only scores one shard of the inputs, given as INDEX/COUNT (e.g. 0/4 to 3/4): the inputs " +
+                        "are split deterministically into COUNT shards of similar total size, so that each process of a " +
+                        "multi-node run given the same inputs picks its own shard");
+
+        Parameter mergeResults = new Switch("mergeResults")
+                .setLongFlag("merge-results")
+                .setDefault("false")
+                .setHelp("Merges the result files given as arguments (e.g. those of the shards of a run, all CSV or all binary) " +
+                        "into the --output file, and prints the number of pages, token count and scores of each file and of the whole corpus");
+
+        Parameter minQuality = new FlaggedOption("minQuality")
+                .setStringParser(JSAP.FLOAT_PARSER)
+                .setLongFlag("min-quality")
+                .setHelp("With --read-results, only prints the pages with at least this quality score");
+
+        Parameter maxQuality = new FlaggedOption("maxQuality")
+                .setStringParser(JSAP.FLOAT_PARSER)
+                .setLongFlag("max-quality")
+                .setHelp("With --read-results, only prints the pages with at most this quality score");
+
+        Parameter pageOcrFile = new UnflaggedOption("pageOcrFile")
+                .setStringParser(JSAP.STRING_PARSER)
+                .setGreedy(true)
+                .setHelp("The page OCR file (in batch mode: any number of page OCR files, directories or glob patterns)");
 
-        return ocrPage.calculateStatistics();
+        return new Parameter[] { format, parser, classifier, tokenCacheMB, collectors, sampleTolerance, sampleThreshold, sampleSeed, lexicon, buildLexicon, pageChunkSize, maxTokenLength, pageTimeBudget, cacheDir, cacheMaxEntries, metricsFile, metricsInterval, quiet, batch, volume, server, port, threads, pipeline, readerThreads, queueCapacity, manifest, output, journal, outputFormat, tokenLabels, aggregateReport, aggregateBy, aggregateMaxGroups, shard, mergeResults, readResults, minQuality, maxQuality, pageOcrFile };
     }
 
     private static String getApplicationHelp() {
@@ -1,147 +1,302 @@
 package edu.illinois.i3.emop.apps.pageevaluator;
 
+import com.google.common.collect.Lists;
+import edu.illinois.i3.emop.apps.pageevaluator.classifier.FastTokenClassifier;
+import edu.illinois.i3.emop.apps.pageevaluator.classifier.TokenCategory;
+import edu.illinois.i3.emop.apps.pageevaluator.classifier.TokenClassifier;
+import edu.illinois.i3.emop.apps.pageevaluator.collector.StatisticsCollector;
+import edu.illinois.i3.emop.apps.pageevaluator.exceptions.PageBudgetExceededException;
+import edu.illinois.i3.emop.apps.pageevaluator.metrics.ScoringMetrics;
+import edu.illinois.i3.emop.apps.pageevaluator.metrics.Stage;
+import edu.illinois.i3.emop.apps.pageevaluator.sampling.SamplingPolicy;
+import edu.illinois.i3.emop.apps.pageevaluator.sampling.ScoreEstimator;
+
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
 
 public abstract class OCRPage<T extends OCRPageStats> {
 
-    protected static final int MAX_LEADING_PUNCT_TO_REMOVE = 1;
-    protected static final int MAX_TRAILING_PUNCT_TO_REMOVE = 3;
-    protected static final int CLEAN_TOKEN_LEN_THRESHOLD = 3;
-
-    protected final Pattern NonAlphaPattern = Pattern.compile("\\P{L}", Pattern.CANON_EQ);
-    protected final Pattern PunctPattern = Pattern.compile("^\\p{Punct}$");
-    protected final Pattern NumberBasedObjectPattern = Pattern.compile("^\\p{Sc}?[\\.,/\\-]?(\\p{N}+[\\.,/%\\-]?)+\\p{Sc}?$");
-    protected final Pattern OneAlphaPattern = Pattern.compile("^\\p{L}$", Pattern.CANON_EQ);
-    protected final Pattern Repeated4orMoreCharsPattern = Pattern.compile("(\\P{N})\\1{3,}", Pattern.CANON_EQ);
+    // the number of tokens left before the next sampled classification, carried across the pages and lines scored
+    // by each thread, so that short lines are sampled too
+    private static final ThreadLocal<int[]> SAMPLING_COUNTDOWN = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[] { ScoringMetrics.CLASSIFICATION_SAMPLING_INTERVAL };
+        }
+    };
 
+    private List<StatisticsCollector> _statisticsCollectors = Collections.emptyList();
+    private long _timeBudgetMillis;
+    private long _deadlineNanos;
 
     public abstract Iterator<? extends OCRToken> getTokenIterator();
 
+    /**
+     * @param statisticsCollectors The additional statistics to collect: when the page is scored, an empty collector
+     *                             is created from each of them and fed every token
+     */
+    public void setStatisticsCollectors(List<StatisticsCollector> statisticsCollectors) {
+        _statisticsCollectors = statisticsCollectors;
+    }
+
+    /**
+     * Bounds the time spent scoring the page (including the parsing of streaming pages): scoring stops with a
+     * {@link PageBudgetExceededException} once the budget is exceeded. The time is checked every
+     * {@link ScoringMetrics#CLASSIFICATION_SAMPLING_INTERVAL} tokens (and every sampled line), so a single token
+     * is never interrupted (see {@link edu.illinois.i3.emop.apps.pageevaluator.classifier.BoundedTokenClassifier}).
+     *
+     * @param timeBudgetMillis The time budget, or 0 for no budget
+     */
+    public void setTimeBudget(long timeBudgetMillis) {
+        if (timeBudgetMillis < 0)
+            throw new IllegalArgumentException("The page time budget cannot be negative");
+
+        _timeBudgetMillis = timeBudgetMillis;
+    }
+
     public T calculateStatistics() {
+        return calculateStatistics(new FastTokenClassifier());
+    }
+
+    public T calculateStatistics(TokenClassifier tokenClassifier) {
+        long start = startTimeBudget();
+        T pageStats = calculateStatistics(getTokenIterator(), tokenClassifier);
+        ScoringMetrics.getInstance().recordStage(Stage.SCORE, System.nanoTime() - start);
+
+        return pageStats;
+    }
+
+    /**
+     * Calculates the page statistics in parallel when the page has more than chunkSize tokens, by splitting it
+     * (preferably at line ends) into chunks of about chunkSize tokens that are scored on the given pool and merged.
+     * A page is never split after a token that could be joined with the next one, so the result is the same as
+     * the sequential one. Note that the tokens of the page are held in memory while they are scored.
+     *
+     * @param tokenClassifier The token classifier
+     * @param forkJoinPool The pool scoring the chunks
+     * @param chunkSize The (approximate) maximum number of tokens scored by a single task
+     * @return The page statistics
+     */
+    public T calculateStatistics(TokenClassifier tokenClassifier, ForkJoinPool forkJoinPool, int chunkSize) {
+        long start = startTimeBudget();
+        List<OCRToken> tokens = Lists.<OCRToken>newArrayList(getTokenIterator());
+        T pageStats = tokens.size() <= chunkSize ? calculateStatistics(tokens.iterator(), tokenClassifier) :
+                forkJoinPool.invoke(new ChunkStatisticsTask(tokens, tokenClassifier, chunkSize));
+        ScoringMetrics.getInstance().recordStage(Stage.SCORE, System.nanoTime() - start);
+
+        return pageStats;
+    }
+
+    /**
+     * Estimates the page statistics from a random sample of its lines: lines are scored in random order until
+     * the confidence intervals of the scores satisfy the sampling policy (or all the lines have been scored).
+     * The returned statistics are those of the sampled lines, and hold the confidence intervals of the scores
+     * (see {@link OCRPageStats#getEstimate()}). A hyphenated word is never split from the next line.
+     * Note that all the tokens of the page are read (but not classified) first.
+     *
+     * @param tokenClassifier The token classifier
+     * @param samplingPolicy The sampling policy
+     * @return The statistics of the sampled lines
+     */
+    public T estimateStatistics(TokenClassifier tokenClassifier, SamplingPolicy samplingPolicy) {
+        long start = startTimeBudget();
+        List<List<OCRToken>> lines = Lists.newArrayList();
+        List<OCRToken> line = Lists.newArrayList();
         int tokenCount = 0;
-        int ge4RepeatedCharsTokenCount = 0;
-        int numberObjectsTokenCount = 0;
-        int punctTokenCount = 0;
-        int lenGt1NonAlphaTokenCount = 0;
-        int cleanOneNonAlphaNoRepTokenCount = 0;
-        int cleanTwoNonAlphaNoRepTokenCount = 0;
-        int cleanThreeOrMoreNonAlphaTokenCount = 0;
-        int cleanAllAlphaNoRepTokenCount = 0;
-        int cleanShortWordCount = 0;
-        int singleLetterCount = 0;
 
         Iterator<? extends OCRToken> tokenIterator = getTokenIterator();
         while (tokenIterator.hasNext()) {
             OCRToken token = tokenIterator.next();
-            String tokenText = token.getText().trim();
+            line.add(token);
+            tokenCount++;
 
-            // join end of line hyphenated words
-            if (token.isLastTokenOnLine() && tokenText.endsWith("-") && tokenIterator.hasNext()) {
-                String nextTokenText = tokenIterator.next().getText().trim();
-                tokenText = tokenText.substring(0, tokenText.length() - 1) + nextTokenText;
+            if ((token.isLastTokenOnLine() && !isHyphenatedLineEnd(token)) || !tokenIterator.hasNext()) {
+                lines.add(line);
+                line = Lists.newArrayList();
             }
+        }
 
-            if (tokenText.isEmpty())
-                continue;
+        Collections.shuffle(lines, new Random(samplingPolicy.getSeed()));
 
-            tokenCount++;
+        ScoreEstimator estimator = new ScoreEstimator(lines.size(), tokenCount);
+        T pageStats = null;
+        for (List<OCRToken> sampledLine : lines) {
+            checkTimeBudget();
+            T lineStats = calculateStatistics(sampledLine.iterator(), tokenClassifier);
+            estimator.addLine(lineStats, sampledLine.size());
+            if (pageStats == null)
+                pageStats = lineStats;
+            else
+                pageStats.merge(lineStats);
 
-            String normTokenText = tokenText.toLowerCase();
-            String cleanTokenText = cleanToken(normTokenText);
+            if (estimator.getSampledLineCount() >= samplingPolicy.getMinLines() &&
+                    samplingPolicy.isSatisfied(estimator.getEstimate()))
+                break;
+        }
 
-            // tokenText      = the default, not-normalized, token (trimmed)
-            // normTokenText  = the normalized (lowercased) tokenText
-            // cleanTokenText = the normTokenText with MAX_LEADING_PUNCT_REMOVE punctuation removed, and MAX_TRAILING_PUNCT_REMOVE punctuation removed
-            //                  (can be 'null' if, after cleaning, the remaining substring has a length < CLEAN_TOKEN_LEN_THRESHOLD)
+        if (pageStats == null)
+            pageStats = calculateStatistics(tokenIterator, tokenClassifier);
+        pageStats.setEstimate(estimator.getEstimate());
+        ScoringMetrics.getInstance().recordStage(Stage.SCORE, System.nanoTime() - start);
 
-            Integer tokenLength = tokenText.length();
-            Integer cleanTokenLength = cleanTokenText.length();
+        return pageStats;
+    }
 
-            Matcher punctMatcher = PunctPattern.matcher(tokenText);
-            if (punctMatcher.matches()) {
-                punctTokenCount++;
-                continue;
-            }
+    /**
+     * Calculates the statistics of (part of) the page; the time spent is recorded by the callers, once per page
+     */
+    protected T calculateStatistics(Iterator<? extends OCRToken> tokenIterator, TokenClassifier tokenClassifier) {
+        ScoringMetrics metrics = ScoringMetrics.getInstance();
+        int[] samplingCountdownHolder = SAMPLING_COUNTDOWN.get();
+        int samplingCountdown = samplingCountdownHolder[0];
+        T pageStats = getNewTypeParameterInstance();
 
-            Matcher numberMatcher = NumberBasedObjectPattern.matcher(tokenText);
-            if (numberMatcher.matches()) {
-                numberObjectsTokenCount++;
-                continue;
-            }
+        StatisticsCollector[] collectors = new StatisticsCollector[_statisticsCollectors.size()];
+        for (int i = 0; i < collectors.length; i++)
+            collectors[i] = _statisticsCollectors.get(i).newCollector();
+        pageStats.setCollectors(Arrays.asList(collectors));
 
-            Matcher singleAlphaMatcher = OneAlphaPattern.matcher(tokenText);
-            if (singleAlphaMatcher.matches()) {
-                singleLetterCount++;
-                continue;
+        // reused for every token, so that scoring a page does not allocate a String per token
+        StringBuilder tokenText = new StringBuilder();
+
+        while (tokenIterator.hasNext()) {
+            OCRToken token = tokenIterator.next();
+            tokenText.setLength(0);
+            appendTrimmed(token.getTextView(), tokenText);
+
+            // join end of line hyphenated words
+            int tokenLength = tokenText.length();
+            if (token.isLastTokenOnLine() && tokenLength > 0 && tokenText.charAt(tokenLength - 1) == '-' && tokenIterator.hasNext()) {
+                tokenText.setLength(tokenLength - 1);
+                appendTrimmed(tokenIterator.next().getTextView(), tokenText);
             }
 
-            Matcher ge4RepeatedCharsMatcher = Repeated4orMoreCharsPattern.matcher(normTokenText);
-            if (ge4RepeatedCharsMatcher.find()) {
-                ge4RepeatedCharsTokenCount++;
+            if (tokenText.length() == 0)
                 continue;
+
+            TokenCategory category;
+            if (--samplingCountdown == 0) {
+                samplingCountdown = ScoringMetrics.CLASSIFICATION_SAMPLING_INTERVAL;
+                checkTimeBudget();
+                long classifyStart = System.nanoTime();
+                category = tokenClassifier.classify(tokenText);
+                metrics.recordClassification(category, System.nanoTime() - classifyStart);
             }
+            else
+                category = tokenClassifier.classify(tokenText);
 
-            // compute the number of non-alpha characters in the cleaned token (if it contains no more than 3 repeated characters in a run)
-            Matcher nonAlphaMatcher = NonAlphaPattern.matcher(cleanTokenText);
-            int nonAlphaCount = 0;
-            while (nonAlphaMatcher.find())
-                nonAlphaCount++;
+            pageStats.collect(token, tokenText, category);
+            for (StatisticsCollector collector : collectors)
+                collector.collect(token, tokenText, category);
+        }
 
-            if (nonAlphaCount == cleanTokenLength) {
-                lenGt1NonAlphaTokenCount++;
-                continue;
-            }
+        samplingCountdownHolder[0] = samplingCountdown;
 
-            // a token can be cleaned only if, after cleaning, the remaining substring has a length >= 3
-            if (cleanTokenLength < CLEAN_TOKEN_LEN_THRESHOLD) {
-                cleanShortWordCount++;
-                continue;
-            }
+        return pageStats;
+    }
 
-            switch (nonAlphaCount) {
-                case 0:
-                    cleanAllAlphaNoRepTokenCount++;
-                    break;
+    // returns the start time
+    private long startTimeBudget() {
+        long start = System.nanoTime();
+        _deadlineNanos = start + TimeUnit.MILLISECONDS.toNanos(_timeBudgetMillis);
 
-                case 1:
-                    cleanOneNonAlphaNoRepTokenCount++;
-                    break;
+        return start;
+    }
 
-                case 2:
-                    cleanTwoNonAlphaNoRepTokenCount++;
-                    break;
+    private void checkTimeBudget() {
+        if (_timeBudgetMillis > 0 && System.nanoTime() - _deadlineNanos > 0)
+            throw new PageBudgetExceededException("Exceeded the page time budget of " + _timeBudgetMillis + " ms");
+    }
 
-                default:
-                    cleanThreeOrMoreNonAlphaTokenCount++;
-                    break;
-            }
-        }
+    /**
+     * @return True if the token is an end of line hyphenated word (to be joined with the next token)
+     */
+    protected static boolean isHyphenatedLineEnd(OCRToken token) {
+        if (!token.isLastTokenOnLine())
+            return false;
 
-        T pageStats = getNewTypeParameterInstance();
-        pageStats.setCleanAllAlphaNoRepTokenCount(cleanAllAlphaNoRepTokenCount);
-        pageStats.setCleanOneNonAlphaNoRepTokenCount(cleanOneNonAlphaNoRepTokenCount);
-        pageStats.setCleanShortWordCount(cleanShortWordCount);
-        pageStats.setCleanThreeOrMoreNonAlphaTokenCount(cleanThreeOrMoreNonAlphaTokenCount);
-        pageStats.setCleanTwoNonAlphaNoRepTokenCount(cleanTwoNonAlphaNoRepTokenCount);
-        pageStats.setGe4RepeatedCharsTokenCount(ge4RepeatedCharsTokenCount);
-        pageStats.setLenGt1NonAlphaTokenCount(lenGt1NonAlphaTokenCount);
-        pageStats.setNumberObjectsTokenCount(numberObjectsTokenCount);
-        pageStats.setPunctTokenCount(punctTokenCount);
-        pageStats.setSingleLetterCount(singleLetterCount);
-        pageStats.setTokenCount(tokenCount);
+        CharSequence text = token.getTextView();
+        int end = text.length();
+        while (end > 0 && text.charAt(end - 1) <= ' ')
+            end--;
 
-        return pageStats;
+        return end > 0 && text.charAt(end - 1) == '-';
+    }
+
+    /**
+     * Appends the text to the buffer, without its leading and trailing whitespace (as defined by {@link String#trim()})
+     */
+    protected static void appendTrimmed(CharSequence text, StringBuilder buffer) {
+        int start = 0;
+        int end = text.length();
+
+        while (start < end && text.charAt(start) <= ' ')
+            start++;
+        while (end > start && text.charAt(end - 1) <= ' ')
+            end--;
+
+        buffer.append(text, start, end);
     }
 
-    protected String cleanToken(String token) {
-        String cleanToken = token.replaceFirst("^\\p{Punct}{0," + MAX_LEADING_PUNCT_TO_REMOVE + "}", "")
-                .replaceFirst("\\p{Punct}{0," + MAX_TRAILING_PUNCT_TO_REMOVE + "}$", "");
+    private class ChunkStatisticsTask extends RecursiveTask<T> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<OCRToken> _tokens;
+        private final TokenClassifier _tokenClassifier;
+        private final int _chunkSize;
+
+        private ChunkStatisticsTask(List<OCRToken> tokens, TokenClassifier tokenClassifier, int chunkSize) {
+            _tokens = tokens;
+            _tokenClassifier = tokenClassifier;
+            _chunkSize = chunkSize;
+        }
+
+        @Override
+        protected T compute() {
+            int split = _tokens.size() > _chunkSize ? findSplit() : -1;
+            if (split < 0)
+                return calculateStatistics(_tokens.iterator(), _tokenClassifier);
+
+            ChunkStatisticsTask head = new ChunkStatisticsTask(_tokens.subList(0, split), _tokenClassifier, _chunkSize);
+            ChunkStatisticsTask tail = new ChunkStatisticsTask(_tokens.subList(split, _tokens.size()), _tokenClassifier, _chunkSize);
+            head.fork();
+            T tailStats = tail.compute();
 
-        return cleanToken;
+            // merged in page order, for the collectors that depend on it
+            T pageStats = head.join();
+            pageStats.merge(tailStats);
+
+            return pageStats;
+        }
+
+        // returns the index of the first token of the second half, or -1 if the tokens cannot be split
+        private int findSplit() {
+            int size = _tokens.size();
+            int middle = Math.max(1, size / 2);
+
+            // prefer a line end close to the middle
+            int limit = Math.min(size, middle + _chunkSize / 2);
+            for (int i = middle; i < limit; i++) {
+                OCRToken token = _tokens.get(i - 1);
+                if (token.isLastTokenOnLine() && !isHyphenatedLineEnd(token))
+                    return i;
+            }
+
+            for (int i = middle; i < size; i++)
+                if (!isHyphenatedLineEnd(_tokens.get(i - 1)))
+                    return i;
+
+            return -1;
+        }
     }
 
     private Class<T> getTypeParameterClass()
@@ -1,6 +1,27 @@
 package edu.illinois.i3.emop.apps.pageevaluator;
 
-public class OCRPageStats {
+import com.google.common.collect.Lists;
+import edu.illinois.i3.emop.apps.pageevaluator.classifier.TokenCategory;
+import edu.illinois.i3.emop.apps.pageevaluator.collector.StatisticsCollector;
+import edu.illinois.i3.emop.apps.pageevaluator.sampling.ScoreEstimate;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The counts of the token categories of a page (the built-in statistics collector), the scores computed from them,
+ * and the statistics of the additional collectors of the page, if any.
+ */
+public class OCRPageStats implements StatisticsCollector {
+
+    // the number of counts returned by getCounts()
+    public static final int COUNT_COUNT = 11;
+
+    private static final String[] COUNT_NAMES = {
+            "tokenCount", "ge4RepeatedCharsTokenCount", "numberObjectsTokenCount", "punctTokenCount",
+            "lenGt1NonAlphaTokenCount", "cleanOneNonAlphaNoRepTokenCount", "cleanTwoNonAlphaNoRepTokenCount",
+            "cleanThreeOrMoreNonAlphaTokenCount", "cleanAllAlphaNoRepTokenCount", "cleanShortWordCount", "singleLetterCount"
+    };
 
     ///////////////////////////////////////////
     // Page statistics
@@ -25,6 +46,204 @@ public class OCRPageStats {
     private int _cleanShortWordCount;               // tokens which, after cleaning, have length < 3 and are supposed to be words (i.e. no numbers, no single punctuation, no single letters)
     private int _singleLetterCount;                 // tokens made up of exactly 1 alpha character
 
+    // the id of the page within its document, if any
+    private String _pageId = "";
+
+    private List<StatisticsCollector> _collectors = Collections.emptyList();
+
+    // set if the statistics are estimated from a sample of the page
+    private ScoreEstimate _estimate;
+
+    @Override
+    public void collect(OCRToken token, CharSequence text, TokenCategory category) {
+        countToken(category);
+    }
+
+    public void countToken(TokenCategory category) {
+        _tokenCount++;
+
+        switch (category) {
+            case PUNCT:
+                _punctTokenCount++;
+                break;
+
+            case NUMBER_OBJECT:
+                _numberObjectsTokenCount++;
+                break;
+
+            case SINGLE_LETTER:
+                _singleLetterCount++;
+                break;
+
+            case REPEATED_CHARS:
+                _ge4RepeatedCharsTokenCount++;
+                break;
+
+            case NON_ALPHA:
+                _lenGt1NonAlphaTokenCount++;
+                break;
+
+            case CLEAN_SHORT_WORD:
+                _cleanShortWordCount++;
+                break;
+
+            case CLEAN_ALL_ALPHA:
+                _cleanAllAlphaNoRepTokenCount++;
+                break;
+
+            case CLEAN_ONE_NON_ALPHA:
+                _cleanOneNonAlphaNoRepTokenCount++;
+                break;
+
+            case CLEAN_TWO_NON_ALPHA:
+                _cleanTwoNonAlphaNoRepTokenCount++;
+                break;
+
+            case CLEAN_THREE_OR_MORE_NON_ALPHA:
+                _cleanThreeOrMoreNonAlphaTokenCount++;
+                break;
+        }
+    }
+
+    /**
+     * Adds the counts (and the additional collector statistics) of the given statistics to these statistics.
+     * Merging is associative and commutative, so the statistics of a page can be computed from those of its parts
+     * (which are merged in page order, for the collectors whose statistics depend on the order of the tokens).
+     *
+     * @param other The statistics to add
+     * @return These statistics
+     */
+    public OCRPageStats merge(OCRPageStats other) {
+        // e.g. the first page merged into the (initially empty) statistics of a volume
+        if (_collectors.isEmpty() && !other._collectors.isEmpty()) {
+            _collectors = Lists.newArrayListWithCapacity(other._collectors.size());
+            for (StatisticsCollector collector : other._collectors)
+                _collectors.add(collector.newCollector());
+        }
+
+        if (_collectors.size() == other._collectors.size())
+            for (int i = 0; i < _collectors.size(); i++)
+                _collectors.get(i).merge(other._collectors.get(i));
+
+        if (_estimate != null || other._estimate != null)
+            _estimate = ScoreEstimate.merge(getEstimateOrExact(), other.getEstimateOrExact());
+
+        _tokenCount += other._tokenCount;
+        _ge4RepeatedCharsTokenCount += other._ge4RepeatedCharsTokenCount;
+        _numberObjectsTokenCount += other._numberObjectsTokenCount;
+        _punctTokenCount += other._punctTokenCount;
+        _lenGt1NonAlphaTokenCount += other._lenGt1NonAlphaTokenCount;
+        _cleanOneNonAlphaNoRepTokenCount += other._cleanOneNonAlphaNoRepTokenCount;
+        _cleanTwoNonAlphaNoRepTokenCount += other._cleanTwoNonAlphaNoRepTokenCount;
+        _cleanThreeOrMoreNonAlphaTokenCount += other._cleanThreeOrMoreNonAlphaTokenCount;
+        _cleanAllAlphaNoRepTokenCount += other._cleanAllAlphaNoRepTokenCount;
+        _cleanShortWordCount += other._cleanShortWordCount;
+        _singleLetterCount += other._singleLetterCount;
+
+        return this;
+    }
+
+    /**
+     * @return All the counts, in the order: tokens, 4+ repeated chars, number objects, punctuation, non-alpha,
+     *         clean 1 non-alpha, clean 2 non-alpha, clean 3+ non-alpha, clean all alpha, clean short words, single letters
+     */
+    public int[] getCounts() {
+        return new int[] {
+                _tokenCount, _ge4RepeatedCharsTokenCount, _numberObjectsTokenCount, _punctTokenCount,
+                _lenGt1NonAlphaTokenCount, _cleanOneNonAlphaNoRepTokenCount, _cleanTwoNonAlphaNoRepTokenCount,
+                _cleanThreeOrMoreNonAlphaTokenCount, _cleanAllAlphaNoRepTokenCount, _cleanShortWordCount, _singleLetterCount
+        };
+    }
+
+    /**
+     * @param counts All the counts, in the order returned by {@link #getCounts()}
+     */
+    public void setCounts(int[] counts) {
+        if (counts.length != COUNT_COUNT)
+            throw new IllegalArgumentException("Expected " + COUNT_COUNT + " counts, got " + counts.length);
+
+        _tokenCount = counts[0];
+        _ge4RepeatedCharsTokenCount = counts[1];
+        _numberObjectsTokenCount = counts[2];
+        _punctTokenCount = counts[3];
+        _lenGt1NonAlphaTokenCount = counts[4];
+        _cleanOneNonAlphaNoRepTokenCount = counts[5];
+        _cleanTwoNonAlphaNoRepTokenCount = counts[6];
+        _cleanThreeOrMoreNonAlphaTokenCount = counts[7];
+        _cleanAllAlphaNoRepTokenCount = counts[8];
+        _cleanShortWordCount = counts[9];
+        _singleLetterCount = counts[10];
+    }
+
+    @Override
+    public void merge(StatisticsCollector other) {
+        merge((OCRPageStats) other);
+    }
+
+    @Override
+    public StatisticsCollector newCollector() {
+        return new OCRPageStats();
+    }
+
+    @Override
+    public String[] getNames() {
+        return COUNT_NAMES;
+    }
+
+    @Override
+    public double[] getValues() {
+        int[] counts = getCounts();
+        double[] values = new double[counts.length];
+        for (int i = 0; i < counts.length; i++)
+            values[i] = counts[i];
+
+        return values;
+    }
+
+    /**
+     * @return The additional statistics collectors of the page
+     */
+    public List<StatisticsCollector> getCollectors() {
+        return _collectors;
+    }
+
+    public void setCollectors(List<StatisticsCollector> collectors) {
+        _collectors = collectors;
+    }
+
+    /**
+     * @return The confidence intervals of the scores if the statistics were estimated from a sample of the page,
+     *         or null if the whole page was scored
+     */
+    public ScoreEstimate getEstimate() {
+        return _estimate;
+    }
+
+    public void setEstimate(ScoreEstimate estimate) {
+        _estimate = estimate;
+    }
+
+    /**
+     * @return The estimate of the scores, which is exact if the whole page was scored
+     */
+    public ScoreEstimate getEstimateOrExact() {
+        if (_estimate != null)
+            return _estimate;
+
+        float correctable = getCorrectableScore();
+        float quality = getQualityScore();
+
+        return new ScoreEstimate(correctable, correctable, quality, quality, _tokenCount, _tokenCount);
+    }
+
+    public String getPageId() {
+        return _pageId;
+    }
+
+    public void setPageId(String pageId) {
+        _pageId = pageId;
+    }
+
     public int getTokenCount() {
         return _tokenCount;
     }
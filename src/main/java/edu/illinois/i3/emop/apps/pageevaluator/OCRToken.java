@@ -3,6 +3,16 @@ package edu.illinois.i3.emop.apps.pageevaluator;
 public interface OCRToken {
 
     String getText();
+
+    /**
+     * Returns the token text without necessarily creating a String for it
+     * (for example, a {@link TextSpan} of the text of the whole page).
+     * The returned sequence must not change while the token is in use.
+     *
+     * @return The token text
+     */
+    CharSequence getTextView();
+
     boolean isLastTokenOnLine();
 
 }
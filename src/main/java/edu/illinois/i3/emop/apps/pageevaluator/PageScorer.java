@@ -0,0 +1,397 @@
+package edu.illinois.i3.emop.apps.pageevaluator;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+import com.google.common.io.ByteSource;
+import com.google.common.io.Files;
+import edu.illinois.i3.emop.apps.pageevaluator.Main.DocumentFormat;
+import edu.illinois.i3.emop.apps.pageevaluator.Main.ParserEngine;
+import edu.illinois.i3.emop.apps.pageevaluator.cache.ResultCache;
+import edu.illinois.i3.emop.apps.pageevaluator.classifier.BoundedTokenClassifier;
+import edu.illinois.i3.emop.apps.pageevaluator.classifier.CachingTokenClassifier;
+import edu.illinois.i3.emop.apps.pageevaluator.classifier.FastTokenClassifier;
+import edu.illinois.i3.emop.apps.pageevaluator.classifier.TokenClassifier;
+import edu.illinois.i3.emop.apps.pageevaluator.collector.StatisticsCollector;
+import edu.illinois.i3.emop.apps.pageevaluator.exceptions.PageParserException;
+import edu.illinois.i3.emop.apps.pageevaluator.galexml.GaleXmlBook;
+import edu.illinois.i3.emop.apps.pageevaluator.galexml.GaleXmlPage;
+import edu.illinois.i3.emop.apps.pageevaluator.galexml.GaleXmlPageStats;
+import edu.illinois.i3.emop.apps.pageevaluator.hocr.HOCRPage;
+import edu.illinois.i3.emop.apps.pageevaluator.hocr.HOCRPageStats;
+import edu.illinois.i3.emop.apps.pageevaluator.hocr.HOCRStreamPage;
+import edu.illinois.i3.emop.apps.pageevaluator.hocr.HOCRVolume;
+import edu.illinois.i3.emop.apps.pageevaluator.metrics.ScoringMetrics;
+import edu.illinois.i3.emop.apps.pageevaluator.sampling.SamplingPolicy;
+import edu.illinois.i3.emop.apps.pageevaluator.txt.TxtPage;
+import edu.illinois.i3.emop.apps.pageevaluator.txt.TxtStreamPage;
+import opennlp.tools.tokenize.SimpleTokenizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Parses and scores pages of a given format.
+ * Instances hold no per-page state and can be shared by multiple worker threads.
+ */
+public class PageScorer {
+
+    private static final Logger log = LoggerFactory.getLogger(PageScorer.class);
+
+    private final DocumentFormat _format;
+    private final ParserEngine _engine;
+    private TokenClassifier _tokenClassifier = new FastTokenClassifier();
+    private int _pageChunkSize;
+    private ForkJoinPool _forkJoinPool;
+    private ResultCache _resultCache;
+    private List<StatisticsCollector> _statisticsCollectors = Collections.emptyList();
+    private SamplingPolicy _samplingPolicy;
+    private long _pageTimeBudgetMillis;
+
+    public PageScorer(DocumentFormat format) {
+        this(format, ParserEngine.STANDARD);
+    }
+
+    public PageScorer(DocumentFormat format, ParserEngine engine) {
+        _format = format;
+        _engine = engine;
+    }
+
+    /**
+     * Creates a scorer of another format with the same settings, sharing the token classifier,
+     * the fork/join pool, the result cache and the statistics collectors of this scorer
+     *
+     * @param format The page format
+     * @param engine The parser engine
+     * @return The new scorer
+     */
+    public synchronized PageScorer copy(DocumentFormat format, ParserEngine engine) {
+        PageScorer scorer = new PageScorer(format, engine);
+        scorer._tokenClassifier = _tokenClassifier;
+        scorer._pageChunkSize = _pageChunkSize;
+        scorer._forkJoinPool = _forkJoinPool;
+        scorer._resultCache = _resultCache;
+        scorer._statisticsCollectors = _statisticsCollectors;
+        scorer._samplingPolicy = _samplingPolicy;
+        scorer._pageTimeBudgetMillis = _pageTimeBudgetMillis;
+
+        return scorer;
+    }
+
+    public DocumentFormat getFormat() {
+        return _format;
+    }
+
+    public ParserEngine getEngine() {
+        return _engine;
+    }
+
+    public TokenClassifier getTokenClassifier() {
+        return _tokenClassifier;
+    }
+
+    public void setTokenClassifier(TokenClassifier tokenClassifier) {
+        _tokenClassifier = tokenClassifier;
+    }
+
+    public int getPageChunkSize() {
+        return _pageChunkSize;
+    }
+
+    /**
+     * Enables the parallel scoring of large pages: pages with more than pageChunkSize tokens are split into chunks
+     * that are scored on a fork/join pool.
+     *
+     * @param pageChunkSize The maximum number of tokens scored sequentially, or 0 to score all pages sequentially
+     */
+    public synchronized void setPageChunkSize(int pageChunkSize) {
+        if (pageChunkSize < 0)
+            throw new IllegalArgumentException("The page chunk size cannot be negative");
+
+        _pageChunkSize = pageChunkSize;
+        if (pageChunkSize > 0 && _forkJoinPool == null)
+            _forkJoinPool = new ForkJoinPool();
+    }
+
+    public ResultCache getResultCache() {
+        return _resultCache;
+    }
+
+    /**
+     * @param resultCache The cache of page statistics used when scoring page files, or null to disable caching
+     */
+    public void setResultCache(ResultCache resultCache) {
+        _resultCache = resultCache;
+    }
+
+    public SamplingPolicy getSamplingPolicy() {
+        return _samplingPolicy;
+    }
+
+    /**
+     * Enables approximate scoring: the scores of each page are estimated from randomly sampled lines, which are
+     * scored until the sampling policy is satisfied (see {@link OCRPage#estimateStatistics}). The result cache
+     * is not used while sampling.
+     *
+     * @param samplingPolicy The sampling policy, or null to score whole pages
+     */
+    public void setSamplingPolicy(SamplingPolicy samplingPolicy) {
+        _samplingPolicy = samplingPolicy;
+    }
+
+    public long getPageTimeBudget() {
+        return _pageTimeBudgetMillis;
+    }
+
+    /**
+     * Bounds the time spent scoring each page: the pages that take longer are abandoned and reported as failed
+     * (see {@link OCRPage#setTimeBudget}). A failed page of a volume fails the rest of the volume.
+     *
+     * @param pageTimeBudgetMillis The time budget of each page, or 0 for no budget
+     */
+    public void setPageTimeBudget(long pageTimeBudgetMillis) {
+        if (pageTimeBudgetMillis < 0)
+            throw new IllegalArgumentException("The page time budget cannot be negative");
+
+        _pageTimeBudgetMillis = pageTimeBudgetMillis;
+    }
+
+    public List<StatisticsCollector> getStatisticsCollectors() {
+        return _statisticsCollectors;
+    }
+
+    /**
+     * Sets the additional statistics collected from every scored page, in a single pass with the built-in counts
+     * (see {@link OCRPageStats#getCollectors()}). The result cache, which only holds the built-in counts,
+     * is not used while collectors are set.
+     *
+     * @param statisticsCollectors The collectors, from which an empty collector is created for each page
+     */
+    public void setStatisticsCollectors(List<StatisticsCollector> statisticsCollectors) {
+        _statisticsCollectors = ImmutableList.copyOf(statisticsCollectors);
+    }
+
+    public OCRPageStats score(File pageOcrFile) throws IOException, PageParserException {
+        return score(Files.asByteSource(pageOcrFile), pageOcrFile.getName());
+    }
+
+    /**
+     * Scores a page, using the result cache (if any)
+     *
+     * @param pageSource The page content (UTF-8 encoded)
+     * @param id The page id
+     * @return The page statistics
+     */
+    public OCRPageStats score(ByteSource pageSource, String id) throws IOException, PageParserException {
+        try {
+            String key = getCacheKey(pageSource);
+            if (key == null)
+                return scoreSource(pageSource, id);
+
+            OCRPageStats pageStats = _resultCache.get(key);
+            if (pageStats == null) {
+                pageStats = scoreSource(pageSource, id);
+                cacheStatistics(key, pageStats);
+            }
+
+            return pageStats;
+        }
+        catch (IOException | PageParserException | RuntimeException e) {
+            ScoringMetrics.getInstance().recordFailure(e);
+            throw e;
+        }
+    }
+
+    /**
+     * @param pageSource The page content
+     * @return The key of the page in the result cache, or null if the result cache is not used
+     */
+    public String getCacheKey(ByteSource pageSource) throws IOException {
+        if (_resultCache == null || !_statisticsCollectors.isEmpty() || _samplingPolicy != null)
+            return null;
+
+        return _resultCache.getKey(pageSource, _format, getMaxTokenLength(_tokenClassifier));
+    }
+
+    // the maximum length of the tokens classified by the rules (which can change the category of longer tokens),
+    // or 0 if all the tokens are
+    private static int getMaxTokenLength(TokenClassifier tokenClassifier) {
+        while (true) {
+            if (tokenClassifier instanceof CachingTokenClassifier)
+                tokenClassifier = ((CachingTokenClassifier) tokenClassifier).getTokenClassifier();
+            else if (tokenClassifier instanceof BoundedTokenClassifier)
+                return ((BoundedTokenClassifier) tokenClassifier).getMaxTokenLength();
+            else
+                return 0;
+        }
+    }
+
+    /**
+     * @param key The cache key of the page (see {@link #getCacheKey})
+     * @return The cached page statistics, or null if the page is not in the cache
+     */
+    public OCRPageStats getCachedStatistics(String key) {
+        return _resultCache.get(key);
+    }
+
+    /**
+     * Adds the statistics of a page to the result cache. A page that cannot be cached is only logged, as its
+     * statistics are valid.
+     *
+     * @param key The cache key of the page (see {@link #getCacheKey})
+     * @param pageStats The page statistics
+     */
+    public void cacheStatistics(String key, OCRPageStats pageStats) {
+        try {
+            _resultCache.put(key, pageStats);
+        }
+        catch (IOException e) {
+            log.warn("Cannot cache the page statistics with key {}: {}", key, e.getMessage());
+        }
+    }
+
+    private OCRPageStats scoreSource(ByteSource pageSource, String id) throws IOException, PageParserException {
+        Reader pageReader = pageSource.asCharSource(Charsets.UTF_8).openBufferedStream();
+        try {
+            ScoringMetrics.getInstance().recordBytes(pageSource.size());
+            return parseAndScore(pageReader, id);
+        }
+        finally {
+            pageReader.close();
+        }
+    }
+
+    public OCRPageStats score(Reader pageReader, String id) throws PageParserException {
+        try {
+            return parseAndScore(pageReader, id);
+        }
+        catch (PageParserException | RuntimeException e) {
+            ScoringMetrics.getInstance().recordFailure(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Parses a page without scoring it, so that parsing and scoring can run in separate stages.
+     * Gale XML books are parsed as they are scored, and cannot be parsed separately.
+     *
+     * @param pageReader The page reader, which must not be closed before the page has been scored
+     *                   (streaming pages are parsed as they are scored)
+     * @param id The page id
+     * @return The parsed page
+     * @throws PageParserException If the page cannot be parsed
+     */
+    public OCRPage<? extends OCRPageStats> parse(Reader pageReader, String id) throws PageParserException {
+        try {
+            return parsePage(pageReader, id);
+        }
+        catch (PageParserException | RuntimeException e) {
+            ScoringMetrics.getInstance().recordFailure(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Scores a page returned by {@link #parse(Reader, String)}
+     *
+     * @param ocrPage The parsed page
+     * @return The page statistics
+     */
+    public OCRPageStats score(OCRPage<? extends OCRPageStats> ocrPage) {
+        try {
+            return calculateStatistics(ocrPage);
+        }
+        catch (RuntimeException e) {
+            ScoringMetrics.getInstance().recordFailure(e);
+            throw e;
+        }
+    }
+
+    private OCRPageStats parseAndScore(Reader pageReader, String id) throws PageParserException {
+        if (_format == DocumentFormat.GALEXML) {
+            // a book: the statistics of all its pages are merged
+            OCRPageStats bookStats = new OCRPageStats();
+            Iterator<? extends OCRPageStats> pageStatsIterator = scoreVolume(pageReader);
+            while (pageStatsIterator.hasNext())
+                bookStats.merge(pageStatsIterator.next());
+            bookStats.setPageId(id);
+            return bookStats;
+        }
+
+        return calculateStatistics(parsePage(pageReader, id));
+    }
+
+    private OCRPage<? extends OCRPageStats> parsePage(Reader pageReader, String id) throws PageParserException {
+        switch (_format) {
+            case HOCR:
+                return _engine == ParserEngine.STREAMING ?
+                        HOCRStreamPage.parse(pageReader) : HOCRPage.parse(pageReader);
+
+            case TXT:
+                return _engine == ParserEngine.STREAMING ?
+                        TxtStreamPage.parse(pageReader, id, SimpleTokenizer.INSTANCE) :
+                        TxtPage.parse(pageReader, id, SimpleTokenizer.INSTANCE);
+
+            case GALEXML:
+                throw new IllegalArgumentException("Gale XML books are parsed as they are scored");
+
+            default:
+                throw new RuntimeException("Unsupported format: " + _format);
+        }
+    }
+
+    /**
+     * Scores all the pages of an hOCR volume or a Gale XML book in a single streaming pass (regardless of the parser engine).
+     * The pages are parsed and scored as the returned iterator is advanced, so the volume reader must not be closed
+     * before all pages have been read.
+     *
+     * @param volumeReader The volume reader
+     * @return The statistics of each page of the volume, in document order
+     * @throws PageParserException If the volume cannot be parsed
+     */
+    public Iterator<? extends OCRPageStats> scoreVolume(Reader volumeReader) throws PageParserException {
+        switch (_format) {
+            case HOCR:
+                return Iterators.transform(HOCRVolume.open(volumeReader), new Function<HOCRStreamPage, HOCRPageStats>() {
+                    @Override
+                    public HOCRPageStats apply(HOCRStreamPage page) {
+                        return calculateStatistics(page);
+                    }
+                });
+
+            case GALEXML:
+                return Iterators.transform(GaleXmlBook.open(volumeReader), new Function<GaleXmlPage, GaleXmlPageStats>() {
+                    @Override
+                    public GaleXmlPageStats apply(GaleXmlPage page) {
+                        return calculateStatistics(page);
+                    }
+                });
+
+            default:
+                throw new IllegalArgumentException("Volumes can only be scored in hOCR or Gale XML format");
+        }
+    }
+
+    private <T extends OCRPageStats> T calculateStatistics(OCRPage<T> ocrPage) {
+        ocrPage.setStatisticsCollectors(_statisticsCollectors);
+        ocrPage.setTimeBudget(_pageTimeBudgetMillis);
+        T pageStats;
+        if (_samplingPolicy != null)
+            pageStats = ocrPage.estimateStatistics(_tokenClassifier, _samplingPolicy);
+        else if (_pageChunkSize > 0)
+            pageStats = ocrPage.calculateStatistics(_tokenClassifier, _forkJoinPool, _pageChunkSize);
+        else
+            pageStats = ocrPage.calculateStatistics(_tokenClassifier);
+        ScoringMetrics.getInstance().recordPage(pageStats.getTokenCount());
+
+        return pageStats;
+    }
+}
@@ -0,0 +1,56 @@
+package edu.illinois.i3.emop.apps.pageevaluator;
+
+/**
+ * A view of a range of characters of a (larger) shared text buffer, such as the text of a page or line.
+ * Creating a span does not copy any characters; a String is only created when {@link #toString()} is called.
+ */
+public final class TextSpan implements CharSequence {
+
+    private final CharSequence _source;
+    private final int _start;
+    private final int _end;
+
+    public TextSpan(CharSequence source, int start, int end) {
+        if (start < 0 || end > source.length() || start > end)
+            throw new IndexOutOfBoundsException(String.format("[%d, %d) of %d", start, end, source.length()));
+
+        _source = source;
+        _start = start;
+        _end = end;
+    }
+
+    public CharSequence getSource() {
+        return _source;
+    }
+
+    public int getStart() {
+        return _start;
+    }
+
+    public int getEnd() {
+        return _end;
+    }
+
+    @Override
+    public int length() {
+        return _end - _start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= _end - _start)
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+
+        return _source.charAt(_start + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new TextSpan(_source, _start + start, _start + end);
+    }
+
+    @Override
+    public String toString() {
+        return _source.subSequence(_start, _end).toString();
+    }
+}
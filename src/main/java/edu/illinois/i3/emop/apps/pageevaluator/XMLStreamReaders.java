@@ -0,0 +1,35 @@
+package edu.illinois.i3.emop.apps.pageevaluator;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Reader;
+
+/**
+ * Creates the (namespace unaware, non validating) XML stream readers used by the streaming parsers.
+ * External entities and DTDs are never loaded.
+ */
+public final class XMLStreamReaders {
+
+    private static final String IGNORE_EXTERNAL_DTD = "http://java.sun.com/xml/stream/properties/ignore-external-dtd";
+
+    // factory lookups are expensive, so keep one per thread
+    private static final ThreadLocal<XMLInputFactory> XMLInputFactories = new ThreadLocal<XMLInputFactory>() {
+        @Override
+        protected XMLInputFactory initialValue() {
+            XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+            xmlInputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+            xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+            xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, true);
+            if (xmlInputFactory.isPropertySupported(IGNORE_EXTERNAL_DTD))
+                xmlInputFactory.setProperty(IGNORE_EXTERNAL_DTD, true);
+            return xmlInputFactory;
+        }
+    };
+
+    private XMLStreamReaders() { }
+
+    public static XMLStreamReader create(Reader reader) throws XMLStreamException {
+        return XMLInputFactories.get().createXMLStreamReader(reader);
+    }
+}
@@ -0,0 +1,261 @@
+package edu.illinois.i3.emop.apps.pageevaluator.batch;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteSource;
+import com.google.common.io.Files;
+import edu.illinois.i3.emop.apps.pageevaluator.OCRPageStats;
+import edu.illinois.i3.emop.apps.pageevaluator.PageScorer;
+import edu.illinois.i3.emop.apps.pageevaluator.exceptions.PageParserException;
+import edu.illinois.i3.emop.apps.pageevaluator.metrics.ScoringMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scores many pages in a single process using a fixed pool of worker threads.
+ * A page that fails to be scored is reported to the result writer and does not abort the run.
+ */
+public class BatchProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchProcessor.class);
+
+    private final PageScorer _scorer;
+    private final int _threads;
+    private final ResultWriter _resultWriter;
+    private boolean _volumeMode;
+    private ThreadPoolExecutor _executor;
+    private Semaphore _submitPermits;
+    private ProgressJournal _journal;
+
+    private final AtomicInteger _processedCount = new AtomicInteger();
+    private final AtomicInteger _failedCount = new AtomicInteger();
+    private int _skippedCount;
+    private long _elapsedNanos;
+
+    public BatchProcessor(PageScorer scorer, int threads, ResultWriter resultWriter) {
+        _scorer = scorer;
+        _threads = threads;
+        _resultWriter = resultWriter;
+    }
+
+    /**
+     * Scores the given pages, blocking until all of them have been processed
+     *
+     * @param pageFiles The pages to score; zip and tar(.gz) archives are read without extraction, each of their entries
+     *                  being scored as a page (with id "archive!entry")
+     * @return The number of pages that failed to be scored
+     */
+    public int run(Iterable<File> pageFiles) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        startWorkers();
+        try {
+            for (File pageFile : pageFiles) {
+                if (isCompleted(pageFile.getPath()))
+                    continue;
+
+                if (PageArchive.isArchive(pageFile))
+                    submitArchive(pageFile);
+                else
+                    submit(pageFile);
+            }
+        }
+        finally {
+            awaitWorkers();
+            _resultWriter.flush();
+        }
+
+        _elapsedNanos = System.nanoTime() - start;
+
+        return _failedCount.get();
+    }
+
+    protected void startWorkers() {
+        // bounding the pages submitted but not processed keeps memory use independent of the number of input pages;
+        // the submitting thread waits for a permit rather than scoring pages itself, so it keeps reading archives
+        _submitPermits = new Semaphore(_threads * 5);
+        _executor = new ThreadPoolExecutor(_threads, _threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>());
+    }
+
+    protected void awaitWorkers() throws IOException, InterruptedException {
+        _executor.shutdown();
+        _executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    protected void submit(File pageFile) throws InterruptedException {
+        submit(Files.asByteSource(pageFile), pageFile.getPath());
+    }
+
+    protected void submit(final ByteSource pageSource, final String id) throws InterruptedException {
+        _submitPermits.acquire();
+        _executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    process(pageSource, id);
+                }
+                finally {
+                    _submitPermits.release();
+                }
+            }
+        });
+    }
+
+    // entries are decompressed on the submitting thread while the workers score the entries already read
+    private void submitArchive(File archiveFile) throws IOException, InterruptedException {
+        String archivePath = archiveFile.getPath();
+
+        try {
+            PageArchive archive = PageArchive.open(archiveFile);
+            try {
+                while (archive.hasNext()) {
+                    PageArchive.Entry entry = archive.next();
+                    String id = archivePath + "!" + entry.getName();
+                    if (!isCompleted(id))
+                        submit(ByteSource.wrap(entry.getContent()), id);
+                }
+            }
+            finally {
+                archive.close();
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            writeFailure(archivePath, e);
+        }
+    }
+
+    private boolean isCompleted(String id) {
+        if (_journal == null || !_journal.isCompleted(id))
+            return false;
+
+        _skippedCount++;
+
+        return true;
+    }
+
+    public ProgressJournal getJournal() {
+        return _journal;
+    }
+
+    /**
+     * @param journal The journal of a previous run, whose completed pages are skipped, or null to score all pages
+     *                (the results still need to be journaled by the result writer, see {@link JournalingResultWriter})
+     */
+    public void setJournal(ProgressJournal journal) {
+        _journal = journal;
+    }
+
+    public boolean isVolumeMode() {
+        return _volumeMode;
+    }
+
+    /**
+     * @param volumeMode If true, every input file is an hOCR volume (or a Gale XML book) whose pages are all scored: one result is written
+     *                   for each page (with id "file#pageId") followed by the aggregated result of the volume
+     */
+    public void setVolumeMode(boolean volumeMode) {
+        _volumeMode = volumeMode;
+    }
+
+    public int getThreads() {
+        return _threads;
+    }
+
+    public int getProcessedCount() {
+        return _processedCount.get();
+    }
+
+    /**
+     * @return The number of pages skipped as they were completed by a previous run
+     */
+    public int getSkippedCount() {
+        return _skippedCount;
+    }
+
+    public int getFailedCount() {
+        return _failedCount.get();
+    }
+
+    public double getElapsedSeconds() {
+        return _elapsedNanos / 1e9;
+    }
+
+    public double getPagesPerSecond() {
+        return _processedCount.get() / getElapsedSeconds();
+    }
+
+    protected void process(ByteSource pageSource, String id) {
+        try {
+            try {
+                OCRPageStats pageStats = _volumeMode ? processVolume(pageSource, id) : _scorer.score(pageSource, id);
+                writeResult(id, pageStats);
+            }
+            // errors too, so that a page cannot stop its worker without being reported
+            catch (Throwable e) {
+                writeFailure(id, e);
+            }
+        }
+        catch (IOException e) {
+            log.error("Cannot write result for " + id, e);
+        }
+        finally {
+            recordProcessed();
+        }
+    }
+
+    protected void writeResult(String id, OCRPageStats pageStats) throws IOException {
+        _resultWriter.writeResult(id, pageStats);
+    }
+
+    protected void writeFailure(String id, Throwable error) throws IOException {
+        _failedCount.incrementAndGet();
+        _resultWriter.writeFailure(id, error);
+    }
+
+    protected void recordProcessed() {
+        _processedCount.incrementAndGet();
+    }
+
+    protected PageScorer getScorer() {
+        return _scorer;
+    }
+
+    private OCRPageStats processVolume(ByteSource volumeSource, String id) throws IOException, PageParserException {
+        OCRPageStats volumeStats = new OCRPageStats();
+
+        try {
+            Reader volumeReader = volumeSource.asCharSource(Charsets.UTF_8).openBufferedStream();
+            ScoringMetrics.getInstance().recordBytes(volumeSource.size());
+            try {
+                int pageNumber = 0;
+                Iterator<? extends OCRPageStats> pageStatsIterator = _scorer.scoreVolume(volumeReader);
+                while (pageStatsIterator.hasNext()) {
+                    OCRPageStats pageStats = pageStatsIterator.next();
+                    pageNumber++;
+                    String pageId = pageStats.getPageId().isEmpty() ? Integer.toString(pageNumber) : pageStats.getPageId();
+                    writeResult(id + "#" + pageId, pageStats);
+                    volumeStats.merge(pageStats);
+                }
+            }
+            finally {
+                volumeReader.close();
+            }
+
+        }
+        catch (IOException | PageParserException | RuntimeException e) {
+            ScoringMetrics.getInstance().recordFailure(e);
+            throw e;
+        }
+
+        return volumeStats;
+    }
+}
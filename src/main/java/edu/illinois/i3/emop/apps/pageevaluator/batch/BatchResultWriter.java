@@ -0,0 +1,137 @@
+package edu.illinois.i3.emop.apps.pageevaluator.batch;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import edu.illinois.i3.emop.apps.pageevaluator.OCRPageStats;
+import edu.illinois.i3.emop.apps.pageevaluator.collector.StatisticsCollector;
+import edu.illinois.i3.emop.apps.pageevaluator.sampling.ScoreEstimate;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Writes one CSV line per scored page: the page id, both scores, the raw page statistics counts,
+ * the confidence intervals of sampled scores (if enabled), the statistics of the additional collectors (if any)
+ * and, for pages that could not be scored, the reason of the failure (in which case the score and count columns are empty).
+ * Safe for use by multiple worker threads.
+ */
+public class BatchResultWriter implements ResultWriter {
+
+    private static final String[] COLUMNS = {
+            "id", "correctable", "quality",
+            "tokenCount", "ge4RepeatedCharsTokenCount", "numberObjectsTokenCount", "punctTokenCount",
+            "lenGt1NonAlphaTokenCount", "cleanOneNonAlphaNoRepTokenCount", "cleanTwoNonAlphaNoRepTokenCount",
+            "cleanThreeOrMoreNonAlphaTokenCount", "cleanAllAlphaNoRepTokenCount", "cleanShortWordCount",
+            "singleLetterCount"
+    };
+
+    private static final String[] ESTIMATE_COLUMNS = {
+            "correctableLow", "correctableHigh", "qualityLow", "qualityHigh", "examinedFraction"
+    };
+
+    private final Writer _writer;
+    private final List<String> _collectorColumns = Lists.newArrayList();
+    private boolean _estimateColumns;
+
+    public BatchResultWriter(Writer writer) {
+        this(writer, Collections.<StatisticsCollector>emptyList());
+    }
+
+    /**
+     * @param writer The writer
+     * @param statisticsCollectors The additional statistics collectors of the scored pages
+     */
+    public BatchResultWriter(Writer writer, List<StatisticsCollector> statisticsCollectors) {
+        _writer = writer;
+        for (StatisticsCollector collector : statisticsCollectors)
+            _collectorColumns.addAll(Arrays.asList(collector.getNames()));
+    }
+
+    /**
+     * @param estimateColumns If true, the confidence intervals of the scores and the examined fraction of the pages
+     *                        are written after the counts (for pages scored by sampling)
+     */
+    public void setEstimateColumns(boolean estimateColumns) {
+        _estimateColumns = estimateColumns;
+    }
+
+    public synchronized void writeHeader() throws IOException {
+        _writer.write(Joiner.on(',').join(COLUMNS));
+        if (_estimateColumns)
+            _writer.write(',' + Joiner.on(',').join(ESTIMATE_COLUMNS));
+        for (String column : _collectorColumns)
+            _writer.write(',' + column);
+        _writer.write(",error\n");
+    }
+
+    @Override
+    public synchronized void writeResult(String id, OCRPageStats pageStats) throws IOException {
+        _writer.write(String.format(Locale.ROOT, "%s,%f,%f,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d",
+                escape(id),
+                pageStats.getCorrectableScore(),
+                pageStats.getQualityScore(),
+                pageStats.getTokenCount(),
+                pageStats.getGe4RepeatedCharsTokenCount(),
+                pageStats.getNumberObjectsTokenCount(),
+                pageStats.getPunctTokenCount(),
+                pageStats.getLenGt1NonAlphaTokenCount(),
+                pageStats.getCleanOneNonAlphaNoRepTokenCount(),
+                pageStats.getCleanTwoNonAlphaNoRepTokenCount(),
+                pageStats.getCleanThreeOrMoreNonAlphaTokenCount(),
+                pageStats.getCleanAllAlphaNoRepTokenCount(),
+                pageStats.getCleanShortWordCount(),
+                pageStats.getSingleLetterCount()));
+        if (_estimateColumns) {
+            ScoreEstimate estimate = pageStats.getEstimateOrExact();
+            for (double value : new double[] { estimate.getCorrectableLow(), estimate.getCorrectableHigh(),
+                    estimate.getQualityLow(), estimate.getQualityHigh(), estimate.getExaminedFraction() })
+                _writer.write(',' + format(value));
+        }
+        for (StatisticsCollector collector : pageStats.getCollectors())
+            for (double value : collector.getValues())
+                _writer.write(',' + format(value));
+        _writer.write(",\n");
+    }
+
+    // counts are written as integers, undefined values as empty strings
+    private static String format(double value) {
+        if (Double.isNaN(value))
+            return "";
+        if (value == Math.rint(value) && Math.abs(value) < 1e15)
+            return Long.toString((long) value);
+
+        return String.format(Locale.ROOT, "%f", value);
+    }
+
+    @Override
+    public synchronized void writeFailure(String id, Throwable error) throws IOException {
+        String message = error.getMessage() != null ? error.getMessage() : error.getClass().getName();
+        _writer.write(escape(id));
+        int columnCount = COLUMNS.length + (_estimateColumns ? ESTIMATE_COLUMNS.length : 0) + _collectorColumns.size();
+        for (int i = 0; i < columnCount; i++)
+            _writer.write(',');
+        _writer.write(escape(message));
+        _writer.write('\n');
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        _writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        _writer.close();
+    }
+
+    static String escape(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0)
+            return value;
+
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,248 @@
+package edu.illinois.i3.emop.apps.pageevaluator.batch;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.AbstractIterator;
+import edu.illinois.i3.emop.apps.pageevaluator.OCRPageStats;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * Reads a result file written by {@link BinaryResultWriter}, one block at a time.
+ *
+ * Reading stops at the first incomplete or corrupt block (e.g. the last block of an interrupted run),
+ * which is reported by {@link #isTruncated()}. The columns of a block can be scanned without decoding
+ * the page ids, which are only decoded on demand.
+ */
+public class BinaryResultReader extends AbstractIterator<BinaryResultReader.Block> implements Closeable {
+
+    /**
+     * The rows of a block
+     */
+    public static class Block {
+        private final int _rowCount;
+        private final byte[] _payload;
+        private final byte[] _statuses;
+        private final float[] _correctableScores;
+        private final float[] _qualityScores;
+        private final int[][] _counts;
+        // offsets of the UTF-8 bytes of the ids and errors in the payload (-1 if the row has no error)
+        private final int[] _idOffsets;
+        private final int[] _errorOffsets;
+
+        private Block(int rowCount, byte[] payload, int countColumns) {
+            _rowCount = rowCount;
+            _payload = payload;
+            _statuses = new byte[rowCount];
+            _correctableScores = new float[rowCount];
+            _qualityScores = new float[rowCount];
+            _counts = new int[countColumns][rowCount];
+            _idOffsets = new int[rowCount];
+            _errorOffsets = new int[rowCount];
+
+            ByteBuffer buffer = ByteBuffer.wrap(payload);
+            buffer.get(_statuses);
+            for (int row = 0; row < rowCount; row++)
+                _correctableScores[row] = buffer.getFloat();
+            for (int row = 0; row < rowCount; row++)
+                _qualityScores[row] = buffer.getFloat();
+            for (int[] column : _counts)
+                for (int row = 0; row < rowCount; row++)
+                    column[row] = readVarInt(buffer);
+            for (int row = 0; row < rowCount; row++)
+                _idOffsets[row] = skipString(buffer);
+            for (int row = 0; row < rowCount; row++)
+                _errorOffsets[row] = isFailed(row) ? skipString(buffer) : -1;
+        }
+
+        public int getRowCount() {
+            return _rowCount;
+        }
+
+        public boolean isFailed(int row) {
+            return _statuses[row] == BinaryResultWriter.STATUS_FAILED;
+        }
+
+        /**
+         * @return The correctable scores of all the rows (NaN for failures); must not be modified
+         */
+        public float[] getCorrectableScores() {
+            return _correctableScores;
+        }
+
+        /**
+         * @return The quality scores of all the rows (NaN for failures); must not be modified
+         */
+        public float[] getQualityScores() {
+            return _qualityScores;
+        }
+
+        /**
+         * @param column The index of the count, in the order of {@link OCRPageStats#getCounts()}
+         * @return The values of the count for all the rows; must not be modified
+         */
+        public int[] getCounts(int column) {
+            return _counts[column];
+        }
+
+        public String getId(int row) {
+            return decodeString(_idOffsets[row]);
+        }
+
+        /**
+         * @return The reason of the failure, or null if the page was scored
+         */
+        public String getError(int row) {
+            return _errorOffsets[row] >= 0 ? decodeString(_errorOffsets[row]) : null;
+        }
+
+        /**
+         * @return The statistics of a scored page
+         */
+        public OCRPageStats getPageStats(int row) {
+            int[] counts = new int[OCRPageStats.COUNT_COUNT];
+            for (int column = 0; column < counts.length; column++)
+                counts[column] = _counts[column][row];
+
+            OCRPageStats pageStats = new OCRPageStats();
+            pageStats.setCounts(counts);
+
+            return pageStats;
+        }
+
+        private String decodeString(int offset) {
+            ByteBuffer buffer = ByteBuffer.wrap(_payload);
+            buffer.position(offset);
+            int length = readVarInt(buffer);
+
+            return new String(_payload, buffer.position(), length, Charsets.UTF_8);
+        }
+
+        // returns the offset of the string, and moves past it
+        private static int skipString(ByteBuffer buffer) {
+            int offset = buffer.position();
+            int length = readVarInt(buffer);
+            buffer.position(buffer.position() + length);
+
+            return offset;
+        }
+
+        private static int readVarInt(ByteBuffer buffer) {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                byte b = buffer.get();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0)
+                    return value;
+            }
+
+            throw new IllegalArgumentException("Malformed varint");
+        }
+    }
+
+    // guards against allocating a corrupt length
+    private static final int MAX_PAYLOAD_LENGTH = 1 << 28;
+
+    private final DataInputStream _inputStream;
+    private final int _countColumns;
+    private final CRC32 _crc = new CRC32();
+    private long _validLength = BinaryResultWriter.HEADER_LENGTH;
+    private boolean _truncated;
+
+    private BinaryResultReader(DataInputStream inputStream, int countColumns) {
+        _inputStream = inputStream;
+        _countColumns = countColumns;
+    }
+
+    public static BinaryResultReader open(File resultFile) throws IOException {
+        return open(new BufferedInputStream(new FileInputStream(resultFile), 1 << 16));
+    }
+
+    public static BinaryResultReader open(InputStream inputStream) throws IOException {
+        DataInputStream dataInputStream = new DataInputStream(inputStream);
+        try {
+            if (dataInputStream.readInt() != BinaryResultWriter.MAGIC)
+                throw new IOException("Not a result file");
+            int version = dataInputStream.readInt();
+            if (version != BinaryResultWriter.VERSION)
+                throw new IOException("Unsupported result file version: " + version);
+            int countColumns = dataInputStream.readInt();
+            if (countColumns != OCRPageStats.COUNT_COUNT)
+                throw new IOException("Expected " + OCRPageStats.COUNT_COUNT + " count columns, got " + countColumns);
+
+            return new BinaryResultReader(dataInputStream, countColumns);
+        }
+        catch (IOException e) {
+            dataInputStream.close();
+            throw e instanceof EOFException ? new IOException("Not a result file", e) : e;
+        }
+    }
+
+    /**
+     * @return True if reading stopped at an incomplete or corrupt block
+     */
+    public boolean isTruncated() {
+        return _truncated;
+    }
+
+    /**
+     * @return The length of the file up to the end of the last block read
+     */
+    public long getValidLength() {
+        return _validLength;
+    }
+
+    @Override
+    protected Block computeNext() {
+        try {
+            int rowCount;
+            try {
+                rowCount = _inputStream.readInt();
+            }
+            catch (EOFException e) {
+                return endOfData();
+            }
+
+            int payloadLength = _inputStream.readInt();
+            if (rowCount <= 0 || payloadLength <= 0 || payloadLength > MAX_PAYLOAD_LENGTH)
+                return truncated();
+
+            byte[] payload = new byte[payloadLength];
+            _inputStream.readFully(payload);
+            int crc = _inputStream.readInt();
+
+            _crc.reset();
+            _crc.update(payload);
+            if ((int) _crc.getValue() != crc)
+                return truncated();
+
+            _validLength += 12 + payloadLength;
+
+            return new Block(rowCount, payload, _countColumns);
+        }
+        catch (EOFException e) {
+            return truncated();
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Block truncated() {
+        _truncated = true;
+        return endOfData();
+    }
+
+    @Override
+    public void close() throws IOException {
+        _inputStream.close();
+    }
+}
@@ -0,0 +1,226 @@
+package edu.illinois.i3.emop.apps.pageevaluator.batch;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import edu.illinois.i3.emop.apps.pageevaluator.OCRPageStats;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.zip.CRC32;
+
+/**
+ * Writes batch results to a compact, column oriented binary file. Results are buffered and written in blocks
+ * of rows, each block holding one column after the other:
+ *
+ * <pre>
+ *   file   := MAGIC VERSION countColumns block*
+ *   block  := rowCount payloadLength payload crc32(payload)
+ *   payload:= status[rowCount] correctable[rowCount] quality[rowCount] (count[rowCount])[countColumns]
+ *             id[rowCount] error[failedRowCount]
+ * </pre>
+ *
+ * Status is a byte (0 for a scored page, 1 for a failure), scores are floats (NaN for failures), counts are
+ * unsigned varints and ids and errors are varint length prefixed UTF-8 strings. The header values are big-endian ints.
+ *
+ * Every block is flushed as soon as it is complete, so the file written by an interrupted run is readable up to its
+ * last complete block. Appending to an existing file first truncates any partially written block.
+ * Safe for use by multiple worker threads.
+ */
+public class BinaryResultWriter implements ResultWriter {
+
+    static final int MAGIC = 0x50455231; // "PER1"
+    static final int VERSION = 1;
+    static final int HEADER_LENGTH = 12;
+    static final byte STATUS_SCORED = 0;
+    static final byte STATUS_FAILED = 1;
+
+    public static final int DEFAULT_BLOCK_SIZE = 4096;
+
+    private final DataOutputStream _outputStream;
+    private final int _blockSize;
+
+    // the columns of the current block
+    private final byte[] _statuses;
+    private final float[] _correctableScores;
+    private final float[] _qualityScores;
+    private final int[][] _counts;
+    private final String[] _ids;
+    private final String[] _errors;
+    private int _rowCount;
+
+    private final CRC32 _crc = new CRC32();
+
+    /**
+     * @param outputStream The stream to write a new result file to
+     * @param blockSize The number of rows per block
+     */
+    public BinaryResultWriter(OutputStream outputStream, int blockSize) throws IOException {
+        this(outputStream, blockSize, true);
+    }
+
+    private BinaryResultWriter(OutputStream outputStream, int blockSize, boolean writeHeader) throws IOException {
+        if (blockSize <= 0)
+            throw new IllegalArgumentException("The block size must be positive");
+
+        _outputStream = new DataOutputStream(outputStream);
+        _blockSize = blockSize;
+        _statuses = new byte[blockSize];
+        _correctableScores = new float[blockSize];
+        _qualityScores = new float[blockSize];
+        _counts = new int[OCRPageStats.COUNT_COUNT][blockSize];
+        _ids = new String[blockSize];
+        _errors = new String[blockSize];
+
+        if (writeHeader) {
+            _outputStream.writeInt(MAGIC);
+            _outputStream.writeInt(VERSION);
+            _outputStream.writeInt(OCRPageStats.COUNT_COUNT);
+            _outputStream.flush();
+        }
+    }
+
+    /**
+     * Opens a result file for writing, appending to it if it already holds results
+     *
+     * @param resultFile The result file
+     * @return The writer
+     * @throws IOException If the file cannot be written, or exists but is not a result file
+     */
+    public static BinaryResultWriter open(File resultFile) throws IOException {
+        boolean append = resultFile.length() > 0;
+        if (append) {
+            long validLength;
+            BinaryResultReader reader = BinaryResultReader.open(resultFile);
+            try {
+                while (reader.hasNext())
+                    reader.next();
+                validLength = reader.getValidLength();
+            }
+            finally {
+                reader.close();
+            }
+
+            // drop a block torn by an interrupted run
+            if (validLength < resultFile.length()) {
+                RandomAccessFile file = new RandomAccessFile(resultFile, "rw");
+                try {
+                    file.setLength(validLength);
+                }
+                finally {
+                    file.close();
+                }
+            }
+        }
+
+        OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(resultFile, append), 1 << 16);
+
+        return new BinaryResultWriter(outputStream, DEFAULT_BLOCK_SIZE, !append);
+    }
+
+    @Override
+    public synchronized void writeResult(String id, OCRPageStats pageStats) throws IOException {
+        int[] counts = pageStats.getCounts();
+        for (int column = 0; column < counts.length; column++)
+            _counts[column][_rowCount] = counts[column];
+
+        _statuses[_rowCount] = STATUS_SCORED;
+        _correctableScores[_rowCount] = pageStats.getCorrectableScore();
+        _qualityScores[_rowCount] = pageStats.getQualityScore();
+        addRow(id, null);
+    }
+
+    @Override
+    public synchronized void writeFailure(String id, Throwable error) throws IOException {
+        for (int[] column : _counts)
+            column[_rowCount] = 0;
+
+        _statuses[_rowCount] = STATUS_FAILED;
+        _correctableScores[_rowCount] = Float.NaN;
+        _qualityScores[_rowCount] = Float.NaN;
+        addRow(id, error.getMessage() != null ? error.getMessage() : error.getClass().getName());
+    }
+
+    /**
+     * Writes the rows buffered so far as a (possibly partial) block
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        writeBlock();
+        _outputStream.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            writeBlock();
+        }
+        finally {
+            _outputStream.close();
+        }
+    }
+
+    private void addRow(String id, String error) throws IOException {
+        _ids[_rowCount] = id;
+        _errors[_rowCount] = error;
+
+        if (++_rowCount == _blockSize) {
+            writeBlock();
+            _outputStream.flush();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        if (_rowCount == 0)
+            return;
+
+        ByteArrayDataOutput payload = ByteStreams.newDataOutput(_rowCount * (OCRPageStats.COUNT_COUNT + 48));
+        payload.write(_statuses, 0, _rowCount);
+        for (int row = 0; row < _rowCount; row++)
+            payload.writeFloat(_correctableScores[row]);
+        for (int row = 0; row < _rowCount; row++)
+            payload.writeFloat(_qualityScores[row]);
+        for (int[] column : _counts)
+            for (int row = 0; row < _rowCount; row++)
+                writeVarInt(payload, column[row]);
+        for (int row = 0; row < _rowCount; row++)
+            writeString(payload, _ids[row]);
+        for (int row = 0; row < _rowCount; row++)
+            if (_errors[row] != null)
+                writeString(payload, _errors[row]);
+
+        byte[] bytes = payload.toByteArray();
+        _crc.reset();
+        _crc.update(bytes);
+
+        _outputStream.writeInt(_rowCount);
+        _outputStream.writeInt(bytes.length);
+        _outputStream.write(bytes);
+        _outputStream.writeInt((int) _crc.getValue());
+
+        for (int row = 0; row < _rowCount; row++) {
+            _ids[row] = null;
+            _errors[row] = null;
+        }
+        _rowCount = 0;
+    }
+
+    private static void writeString(ByteArrayDataOutput output, String value) {
+        byte[] bytes = value.getBytes(Charsets.UTF_8);
+        writeVarInt(output, bytes.length);
+        output.write(bytes);
+    }
+
+    private static void writeVarInt(ByteArrayDataOutput output, int value) {
+        while ((value & ~0x7F) != 0) {
+            output.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.write(value);
+    }
+}
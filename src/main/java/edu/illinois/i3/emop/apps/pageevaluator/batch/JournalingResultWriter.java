@@ -0,0 +1,76 @@
+package edu.illinois.i3.emop.apps.pageevaluator.batch;
+
+import edu.illinois.i3.emop.apps.pageevaluator.OCRPageStats;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Journals the pages whose results are written by another result writer, checkpointing the journal every
+ * {@link #CHECKPOINT_INTERVAL_MILLIS} (and when flushed) once the results have been flushed to the result file.
+ *
+ * The results of the pages completed by a previous run are not written again (e.g. the pages of an hOCR volume
+ * that was interrupted before all its pages were scored). Safe for use by multiple worker threads.
+ */
+public class JournalingResultWriter implements ResultWriter {
+
+    public static final long CHECKPOINT_INTERVAL_MILLIS = 5000;
+
+    private final ResultWriter _resultWriter;
+    private final ProgressJournal _journal;
+    private final File _outputFile;
+    private long _lastCheckpointMillis = System.currentTimeMillis();
+
+    /**
+     * @param resultWriter The writer of the results
+     * @param journal The journal
+     * @param outputFile The file the results are written to, or null if the results are not written to a file
+     */
+    public JournalingResultWriter(ResultWriter resultWriter, ProgressJournal journal, File outputFile) {
+        _resultWriter = resultWriter;
+        _journal = journal;
+        _outputFile = outputFile;
+    }
+
+    @Override
+    public synchronized void writeResult(String id, OCRPageStats pageStats) throws IOException {
+        if (_journal.isCompleted(id))
+            return;
+
+        _resultWriter.writeResult(id, pageStats);
+        completed(id);
+    }
+
+    @Override
+    public synchronized void writeFailure(String id, Throwable error) throws IOException {
+        if (_journal.isCompleted(id))
+            return;
+
+        _resultWriter.writeFailure(id, error);
+        completed(id);
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        _resultWriter.flush();
+        _journal.checkpoint(_outputFile != null ? _outputFile.length() : 0);
+        _lastCheckpointMillis = System.currentTimeMillis();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+            _resultWriter.close();
+        }
+        finally {
+            _journal.close();
+        }
+    }
+
+    private void completed(String id) throws IOException {
+        _journal.complete(id);
+        if (System.currentTimeMillis() - _lastCheckpointMillis >= CHECKPOINT_INTERVAL_MILLIS)
+            flush();
+    }
+}
@@ -0,0 +1,104 @@
+package edu.illinois.i3.emop.apps.pageevaluator.batch;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.io.ByteStreams;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+
+/**
+ * Reads the pages stored in a zip, tar, tar.gz or tgz archive, one entry at a time and without extracting them to disk.
+ * Directories and hidden files (whose name starts with '.') are skipped.
+ */
+public class PageArchive extends AbstractIterator<PageArchive.Entry> implements Closeable {
+
+    public static class Entry {
+        private final String _name;
+        private final byte[] _content;
+
+        private Entry(String name, byte[] content) {
+            _name = name;
+            _content = content;
+        }
+
+        /**
+         * @return The path of the entry within the archive
+         */
+        public String getName() {
+            return _name;
+        }
+
+        public byte[] getContent() {
+            return _content;
+        }
+    }
+
+    private final ArchiveInputStream _archiveStream;
+
+    private PageArchive(ArchiveInputStream archiveStream) {
+        _archiveStream = archiveStream;
+    }
+
+    public static boolean isArchive(File file) {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        return name.endsWith(".zip") || name.endsWith(".tar") || name.endsWith(".tar.gz") || name.endsWith(".tgz");
+    }
+
+    public static PageArchive open(File archiveFile) throws IOException {
+        String name = archiveFile.getName().toLowerCase(Locale.ROOT);
+        InputStream inputStream = new BufferedInputStream(new FileInputStream(archiveFile));
+
+        try {
+            if (name.endsWith(".zip"))
+                return new PageArchive(new ZipArchiveInputStream(inputStream));
+
+            if (name.endsWith(".tar.gz") || name.endsWith(".tgz"))
+                inputStream = new BufferedInputStream(new GzipCompressorInputStream(inputStream, true));
+
+            return new PageArchive(new TarArchiveInputStream(inputStream));
+        }
+        catch (IOException e) {
+            inputStream.close();
+            throw e;
+        }
+    }
+
+    @Override
+    protected Entry computeNext() {
+        try {
+            ArchiveEntry entry;
+            while ((entry = _archiveStream.getNextEntry()) != null) {
+                String name = entry.getName();
+                String fileName = name.substring(name.lastIndexOf('/') + 1);
+                if (entry.isDirectory() || fileName.isEmpty() || fileName.startsWith(".") || !_archiveStream.canReadEntryData(entry))
+                    continue;
+                // links and devices
+                if (entry instanceof TarArchiveEntry && !((TarArchiveEntry) entry).isFile())
+                    continue;
+
+                return new Entry(name, ByteStreams.toByteArray(_archiveStream));
+            }
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return endOfData();
+    }
+
+    @Override
+    public void close() throws IOException {
+        _archiveStream.close();
+    }
+}
@@ -0,0 +1,141 @@
+package edu.illinois.i3.emop.apps.pageevaluator.batch;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.FluentIterable;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Resolves batch mode inputs into the (lazily enumerated) sequence of page files to be scored.
+ * An input can be a page file, a directory (all regular, non-hidden files below it are included),
+ * or a glob pattern such as <code>pages/**&#47;*.html</code>. A manifest file lists one page file per line;
+ * blank lines and lines starting with '#' are ignored.
+ */
+public final class PageInputs {
+
+    private static final String GLOB_CHARS = "*?[{";
+
+    private PageInputs() { }
+
+    public static Iterable<File> resolve(List<String> inputs, File manifest) {
+        List<Iterable<File>> sources = Lists.newArrayList();
+
+        for (String input : inputs)
+            sources.add(resolve(input));
+
+        if (manifest != null)
+            sources.add(fromManifest(manifest));
+
+        return FluentIterable.from(sources).transformAndConcat(
+                new Function<Iterable<File>, Iterable<File>>() {
+                    @Override
+                    public Iterable<File> apply(Iterable<File> files) {
+                        return files;
+                    }
+                });
+    }
+
+    public static Iterable<File> resolve(String input) {
+        if (isGlob(input))
+            return fromGlob(input);
+
+        File file = new File(input);
+        if (file.isDirectory())
+            return fromDirectory(file);
+
+        return Collections.singletonList(file);
+    }
+
+    public static Iterable<File> fromDirectory(File dir) {
+        return Files.fileTreeTraverser()
+                .preOrderTraversal(dir)
+                .filter(new Predicate<File>() {
+                    @Override
+                    public boolean apply(File file) {
+                        return file.isFile() && !file.isHidden();
+                    }
+                });
+    }
+
+    public static Iterable<File> fromGlob(String glob) {
+        // walk only the part of the tree below the longest glob-free directory prefix
+        int globStart = indexOfAny(glob, GLOB_CHARS);
+        int baseEnd = Math.max(glob.lastIndexOf('/', globStart), glob.lastIndexOf(File.separatorChar, globStart));
+        File baseDir = baseEnd < 0 ? new File(".") : new File(glob.substring(0, baseEnd + 1));
+        final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+
+        return FluentIterable.from(fromDirectory(baseDir))
+                .transform(new Function<File, File>() {
+                    @Override
+                    public File apply(File file) {
+                        // drops the "./" prefix introduced when walking the current directory
+                        return file.toPath().normalize().toFile();
+                    }
+                })
+                .filter(new Predicate<File>() {
+                    @Override
+                    public boolean apply(File file) {
+                        return matcher.matches(file.toPath());
+                    }
+                });
+    }
+
+    public static Iterable<File> fromManifest(final File manifest) {
+        return new Iterable<File>() {
+            @Override
+            public Iterator<File> iterator() {
+                final BufferedReader reader;
+                try {
+                    reader = Files.newReader(manifest, Charsets.UTF_8);
+                }
+                catch (IOException e) {
+                    throw new RuntimeException("Cannot read manifest " + manifest, e);
+                }
+
+                return new AbstractIterator<File>() {
+                    @Override
+                    protected File computeNext() {
+                        try {
+                            String line;
+                            while ((line = reader.readLine()) != null) {
+                                line = line.trim();
+                                if (!line.isEmpty() && !line.startsWith("#"))
+                                    return new File(line);
+                            }
+                            reader.close();
+                        }
+                        catch (IOException e) {
+                            throw new RuntimeException("Error reading manifest " + manifest, e);
+                        }
+
+                        return endOfData();
+                    }
+                };
+            }
+        };
+    }
+
+    private static boolean isGlob(String input) {
+        return indexOfAny(input, GLOB_CHARS) >= 0;
+    }
+
+    private static int indexOfAny(String s, String chars) {
+        for (int i = 0; i < s.length(); i++)
+            if (chars.indexOf(s.charAt(i)) >= 0)
+                return i;
+
+        return -1;
+    }
+}
@@ -0,0 +1,81 @@
+package edu.illinois.i3.emop.apps.pageevaluator.batch;
+
+import com.google.common.collect.Lists;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Splits batch mode inputs into shards of similar total size, so that a corpus can be scored by several
+ * independent processes (e.g. on different machines) that each select their own shard from the same inputs.
+ *
+ * The split is deterministic: the files are sorted by decreasing size (then by path), and each file is assigned
+ * in turn to the shard with the fewest bytes so far (then the lowest index). This balances the shards by size
+ * within the size of the largest file, however skewed the page sizes. Every process must be given the same inputs
+ * (with the same paths), and the files must not change between the runs of the shards.
+ */
+public final class PageShards {
+
+    private PageShards() { }
+
+    /**
+     * @param files The inputs of all the shards
+     * @param shardIndex The index of the shard, from 0 to shardCount - 1
+     * @param shardCount The number of shards
+     * @return The files of the shard, largest first
+     */
+    public static List<File> select(Iterable<File> files, int shardIndex, int shardCount) {
+        if (shardCount <= 0)
+            throw new IllegalArgumentException("The shard count must be positive");
+        if (shardIndex < 0 || shardIndex >= shardCount)
+            throw new IllegalArgumentException("The shard index must be between 0 and " + (shardCount - 1));
+
+        List<SizedFile> sizedFiles = Lists.newArrayList();
+        for (File file : files)
+            sizedFiles.add(new SizedFile(file));
+        Collections.sort(sizedFiles);
+
+        PriorityQueue<long[]> shards = new PriorityQueue<>(shardCount, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] shard, long[] other) {
+                int result = Long.compare(shard[0], other[0]);
+                return result != 0 ? result : Long.compare(shard[1], other[1]);
+            }
+        });
+        for (int i = 0; i < shardCount; i++)
+            shards.add(new long[] { 0, i });
+
+        List<File> shardFiles = Lists.newArrayList();
+        for (SizedFile sizedFile : sizedFiles) {
+            long[] shard = shards.poll();
+            shard[0] += sizedFile.size;
+            shards.add(shard);
+
+            if (shard[1] == shardIndex)
+                shardFiles.add(sizedFile.file);
+        }
+
+        return shardFiles;
+    }
+
+    private static class SizedFile implements Comparable<SizedFile> {
+        final File file;
+        final String path;
+        final long size;
+
+        SizedFile(File file) {
+            this.file = file;
+            this.path = file.getPath();
+            this.size = file.length();
+        }
+
+        @Override
+        public int compareTo(SizedFile other) {
+            int result = Long.compare(other.size, size);
+            return result != 0 ? result : path.compareTo(other.path);
+        }
+    }
+}
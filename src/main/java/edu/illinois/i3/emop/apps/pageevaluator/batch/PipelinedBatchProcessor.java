@@ -0,0 +1,460 @@
+package edu.illinois.i3.emop.apps.pageevaluator.batch;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteSource;
+import com.google.common.io.Files;
+import edu.illinois.i3.emop.apps.pageevaluator.Main.DocumentFormat;
+import edu.illinois.i3.emop.apps.pageevaluator.OCRPage;
+import edu.illinois.i3.emop.apps.pageevaluator.OCRPageStats;
+import edu.illinois.i3.emop.apps.pageevaluator.PageScorer;
+import edu.illinois.i3.emop.apps.pageevaluator.metrics.ScoringMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scores many pages in a pipeline of stages connected by bounded queues, so that reading page files overlaps
+ * with the CPU bound parsing and scoring of the pages already read:
+ *
+ * <pre>
+ *   input -&gt; [readers] -&gt; read -&gt; [workers: parse] -&gt; parsed -&gt; [workers: score] -&gt; output -&gt; [writer]
+ * </pre>
+ *
+ * Page files are read by a pool of I/O threads, parsed and scored by a pool of CPU workers (one per thread
+ * of the processor), and the results are written by a single writer thread. Each stage blocks when the queue
+ * to its next stage is full, so that memory use is bounded by the queue capacities regardless of the number of
+ * input pages. The workers score the parsed pages before parsing new ones, and score a page themselves when
+ * the parsed queue is full, so that the CPU stages never wait on each other.
+ *
+ * Archives are read by the submitting thread, and hOCR volumes, Gale XML books and (when a result cache is used)
+ * cached pages skip the parsed queue, as they are parsed as they are scored.
+ *
+ * The depths of the queues are sampled while the pipeline runs (see {@link #getQueueStats()}) and reported by
+ * {@link ScoringMetrics}: a queue that stays full is waiting on the stage that follows it.
+ */
+public class PipelinedBatchProcessor extends BatchProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(PipelinedBatchProcessor.class);
+
+    private static final long SAMPLE_INTERVAL_MILLIS = 20;
+    private static final long POLL_MILLIS = 10;
+
+    /**
+     * The depth statistics of a queue between two stages
+     */
+    public static class QueueStats {
+        private final String _name;
+        private final BlockingQueue<?> _queue;
+        private final int _capacity;
+        private long _samples;
+        private long _depthSum;
+        private int _maxDepth;
+
+        private QueueStats(String name, BlockingQueue<?> queue) {
+            _name = name;
+            _queue = queue;
+            _capacity = queue.remainingCapacity();
+        }
+
+        private synchronized void sample() {
+            int depth = _queue.size();
+            _samples++;
+            _depthSum += depth;
+            _maxDepth = Math.max(_maxDepth, depth);
+        }
+
+        public String getName() {
+            return _name;
+        }
+
+        public int getCapacity() {
+            return _capacity;
+        }
+
+        public synchronized double getMeanDepth() {
+            return _samples > 0 ? (double) _depthSum / _samples : 0;
+        }
+
+        public synchronized int getMaxDepth() {
+            return _maxDepth;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s %.1f/%d (max %d)", _name, getMeanDepth(), _capacity, getMaxDepth());
+        }
+    }
+
+    // a page read in memory
+    private static class ReadPage {
+        final String id;
+        final ByteSource source;
+
+        ReadPage(String id, ByteSource source) {
+            this.id = id;
+            this.source = source;
+        }
+    }
+
+    // a parsed page, whose reader is closed once the page is scored
+    private static class ParsedPage {
+        final String id;
+        final OCRPage<? extends OCRPageStats> page;
+        final Reader reader;
+        final String cacheKey;
+
+        ParsedPage(String id, OCRPage<? extends OCRPageStats> page, Reader reader, String cacheKey) {
+            this.id = id;
+            this.page = page;
+            this.reader = reader;
+            this.cacheKey = cacheKey;
+        }
+    }
+
+    // a result (or failure) to write
+    private static class Output {
+        final String id;
+        final OCRPageStats pageStats;
+        final Throwable error;
+
+        Output(String id, OCRPageStats pageStats, Throwable error) {
+            this.id = id;
+            this.pageStats = pageStats;
+            this.error = error;
+        }
+    }
+
+    private static final File END_OF_INPUT = new File("");
+    private static final Output END_OF_OUTPUT = new Output(null, null, null);
+
+    private final int _readerThreads;
+    private final int _queueCapacity;
+
+    private BlockingQueue<File> _inputQueue;
+    private BlockingQueue<ReadPage> _readQueue;
+    private BlockingQueue<ParsedPage> _parsedQueue;
+    private BlockingQueue<Output> _outputQueue;
+    private List<QueueStats> _queueStats = ImmutableList.of();
+
+    private Thread[] _readers;
+    private Thread[] _workers;
+    private Thread _writer;
+    private Thread _sampler;
+    private volatile boolean _readingDone;
+    private volatile IOException _writeError;
+
+    /**
+     * @param scorer The page scorer
+     * @param threads The number of CPU workers (usually the number of cores)
+     * @param readerThreads The number of threads reading page files
+     * @param queueCapacity The capacity of each queue between two stages
+     * @param resultWriter The result writer
+     */
+    public PipelinedBatchProcessor(PageScorer scorer, int threads, int readerThreads, int queueCapacity,
+                                   ResultWriter resultWriter) {
+        super(scorer, threads, resultWriter);
+
+        if (readerThreads <= 0)
+            throw new IllegalArgumentException("The number of reader threads must be positive");
+        if (queueCapacity <= 0)
+            throw new IllegalArgumentException("The queue capacity must be positive");
+
+        _readerThreads = readerThreads;
+        _queueCapacity = queueCapacity;
+    }
+
+    public int getReaderThreads() {
+        return _readerThreads;
+    }
+
+    public int getQueueCapacity() {
+        return _queueCapacity;
+    }
+
+    /**
+     * @return The depth statistics of the queues of the last run, in pipeline order
+     */
+    public List<QueueStats> getQueueStats() {
+        return _queueStats;
+    }
+
+    @Override
+    protected void startWorkers() {
+        _inputQueue = new ArrayBlockingQueue<>(_queueCapacity);
+        _readQueue = new ArrayBlockingQueue<>(_queueCapacity);
+        _parsedQueue = new ArrayBlockingQueue<>(_queueCapacity);
+        _outputQueue = new ArrayBlockingQueue<>(_queueCapacity);
+        _readingDone = false;
+        _writeError = null;
+
+        final List<QueueStats> queueStats = ImmutableList.of(
+                new QueueStats("input", _inputQueue),
+                new QueueStats("read", _readQueue),
+                new QueueStats("parsed", _parsedQueue),
+                new QueueStats("output", _outputQueue));
+        _queueStats = queueStats;
+        for (QueueStats stats : queueStats)
+            ScoringMetrics.getInstance().registerQueue(stats.getName(), stats._queue);
+
+        _readers = new Thread[_readerThreads];
+        for (int i = 0; i < _readers.length; i++)
+            _readers[i] = startThread("reader-" + i, new Runnable() {
+                @Override
+                public void run() {
+                    read();
+                }
+            });
+
+        _workers = new Thread[getThreads()];
+        for (int i = 0; i < _workers.length; i++)
+            _workers[i] = startThread("worker-" + i, new Runnable() {
+                @Override
+                public void run() {
+                    work();
+                }
+            });
+
+        _writer = startThread("writer", new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        });
+
+        _sampler = startThread("sampler", new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        for (QueueStats stats : queueStats)
+                            stats.sample();
+                        Thread.sleep(SAMPLE_INTERVAL_MILLIS);
+                    }
+                }
+                catch (InterruptedException ignored) { }
+            }
+        });
+    }
+
+    @Override
+    protected void awaitWorkers() throws IOException, InterruptedException {
+        try {
+            for (int i = 0; i < _readers.length; i++)
+                _inputQueue.put(END_OF_INPUT);
+            join(_readers);
+
+            _readingDone = true;
+            join(_workers);
+
+            _outputQueue.put(END_OF_OUTPUT);
+            _writer.join();
+        }
+        finally {
+            _sampler.interrupt();
+            for (QueueStats stats : _queueStats)
+                ScoringMetrics.getInstance().unregisterQueue(stats.getName());
+        }
+
+        // the results queued after the error were dropped
+        if (_writeError != null)
+            throw _writeError;
+    }
+
+    @Override
+    protected void submit(File pageFile) throws InterruptedException {
+        _inputQueue.put(pageFile);
+    }
+
+    // archive entries are already in memory
+    @Override
+    protected void submit(ByteSource pageSource, String id) throws InterruptedException {
+        _readQueue.put(new ReadPage(id, pageSource));
+    }
+
+    @Override
+    protected void writeResult(String id, OCRPageStats pageStats) throws IOException {
+        enqueue(new Output(id, pageStats, null));
+    }
+
+    @Override
+    protected void writeFailure(String id, Throwable error) throws IOException {
+        enqueue(new Output(id, null, error));
+    }
+
+    private void enqueue(Output output) throws IOException {
+        try {
+            _outputQueue.put(output);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while queuing the result of " + output.id, e);
+        }
+    }
+
+    // the reader stage: reads page files in memory
+    private void read() {
+        try {
+            while (true) {
+                File pageFile = _inputQueue.take();
+                if (pageFile == END_OF_INPUT)
+                    return;
+
+                String id = pageFile.getPath();
+                ByteSource pageSource;
+                try {
+                    pageSource = ByteSource.wrap(Files.toByteArray(pageFile));
+                }
+                catch (IOException e) {
+                    ScoringMetrics.getInstance().recordFailure(e);
+                    writeFailure(id, e);
+                    recordProcessed();
+                    continue;
+                }
+
+                _readQueue.put(new ReadPage(id, pageSource));
+            }
+        }
+        catch (InterruptedException | IOException e) {
+            log.error("Reader stopped", e);
+        }
+    }
+
+    // the CPU stages: scores the parsed pages first, so that the queues drain towards the writer
+    private void work() {
+        try {
+            while (true) {
+                ParsedPage parsedPage = _parsedQueue.poll();
+                if (parsedPage != null) {
+                    score(parsedPage);
+                    continue;
+                }
+
+                boolean readingDone = _readingDone;
+                ReadPage readPage = _readQueue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (readPage != null) {
+                    parsedPage = parse(readPage);
+                    if (parsedPage != null && !_parsedQueue.offer(parsedPage))
+                        score(parsedPage);
+                }
+                else if (readingDone && _readQueue.isEmpty() && _parsedQueue.isEmpty())
+                    return;
+            }
+        }
+        catch (InterruptedException e) {
+            log.error("Worker stopped", e);
+        }
+    }
+
+    // returns null if the page does not need to be scored separately
+    private ParsedPage parse(ReadPage readPage) {
+        PageScorer scorer = getScorer();
+        if (isVolumeMode() || scorer.getFormat() == DocumentFormat.GALEXML) {
+            process(readPage.source, readPage.id);
+            return null;
+        }
+
+        try {
+            String cacheKey = scorer.getCacheKey(readPage.source);
+            if (cacheKey != null) {
+                OCRPageStats pageStats = scorer.getCachedStatistics(cacheKey);
+                if (pageStats != null) {
+                    complete(readPage.id, pageStats, null);
+                    return null;
+                }
+            }
+
+            Reader pageReader = readPage.source.asCharSource(Charsets.UTF_8).openBufferedStream();
+            ScoringMetrics.getInstance().recordBytes(readPage.source.size());
+
+            return new ParsedPage(readPage.id, scorer.parse(pageReader, readPage.id), pageReader, cacheKey);
+        }
+        // errors too, so that the worker goes on and the page is still reported
+        catch (Throwable e) {
+            complete(readPage.id, null, e);
+            return null;
+        }
+    }
+
+    private void score(ParsedPage parsedPage) {
+        try {
+            OCRPageStats pageStats = getScorer().score(parsedPage.page);
+            if (parsedPage.cacheKey != null)
+                getScorer().cacheStatistics(parsedPage.cacheKey, pageStats);
+            complete(parsedPage.id, pageStats, null);
+        }
+        catch (Throwable e) {
+            complete(parsedPage.id, null, e);
+        }
+        finally {
+            try {
+                parsedPage.reader.close();
+            }
+            catch (IOException ignored) { }
+        }
+    }
+
+    private void complete(String id, OCRPageStats pageStats, Throwable error) {
+        try {
+            if (error == null)
+                writeResult(id, pageStats);
+            else
+                writeFailure(id, error);
+        }
+        catch (IOException e) {
+            log.error("Cannot write result for " + id, e);
+        }
+        finally {
+            recordProcessed();
+        }
+    }
+
+    // the writer stage
+    private void write() {
+        try {
+            while (true) {
+                Output output = _outputQueue.take();
+                if (output == END_OF_OUTPUT)
+                    return;
+
+                // keep draining the queue after a write error, so that the other stages do not block
+                if (_writeError != null)
+                    continue;
+
+                try {
+                    if (output.error == null)
+                        super.writeResult(output.id, output.pageStats);
+                    else
+                        super.writeFailure(output.id, output.error);
+                }
+                catch (IOException e) {
+                    _writeError = e;
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            log.error("Writer stopped", e);
+        }
+    }
+
+    private static Thread startThread(String name, Runnable runnable) {
+        Thread thread = new Thread(runnable, "pipeline-" + name);
+        thread.setDaemon(true);
+        thread.start();
+
+        return thread;
+    }
+
+    private static void join(Thread[] threads) throws InterruptedException {
+        for (Thread thread : threads)
+            thread.join();
+    }
+}
@@ -0,0 +1,254 @@
+package edu.illinois.i3.emop.apps.pageevaluator.batch;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal of the pages completed by a batch run, so that an interrupted run can be resumed
+ * without scoring the completed pages again. The journal is written in checkpoints, each recording the ids of the
+ * pages completed since the previous checkpoint and the length of the result file once their results were flushed:
+ *
+ * <pre>
+ *   checkpoint := crc32(record) ' ' record '\n'
+ *   record     := outputLength ('\t' id)*
+ * </pre>
+ *
+ * The CRC is written as 8 hex digits, and tabs, line breaks and backslashes in the ids are escaped with a backslash.
+ *
+ * Opening a journal reads its checkpoints in a single pass, stopping at the first torn or corrupt one (e.g. the last
+ * checkpoint of a killed run), which is truncated, or at the first one recording more results than the result file
+ * holds (if the results did not reach the disk). The result file is then truncated to the length recorded by the
+ * last valid checkpoint (see {@link #restoreOutput}), so that it holds the results of the completed pages only.
+ * Safe for use by multiple worker threads.
+ */
+public class ProgressJournal implements Closeable {
+
+    private final FileOutputStream _outputStream;
+    private final Set<String> _completedIds;
+    private final long _outputLength;
+    private final List<String> _pendingIds = Lists.newArrayList();
+    private final CRC32 _crc = new CRC32();
+
+    private ProgressJournal(FileOutputStream outputStream, Set<String> completedIds, long outputLength) {
+        _outputStream = outputStream;
+        _completedIds = completedIds;
+        _outputLength = outputLength;
+    }
+
+    /**
+     * Opens a journal, reading the pages completed by previous runs (if any)
+     *
+     * @param journalFile The journal file, which is created if it does not exist
+     * @param outputFile The result file of the runs, or null if the results are not written to a file
+     * @return The journal
+     */
+    public static ProgressJournal open(File journalFile, File outputFile) throws IOException {
+        Set<String> completedIds = Sets.newHashSet();
+        long outputLength = 0;
+        long validLength = 0;
+
+        if (journalFile.exists()) {
+            long availableOutputLength = outputFile != null ? outputFile.length() : Long.MAX_VALUE;
+            CRC32 crc = new CRC32();
+            InputStream inputStream = new BufferedInputStream(new FileInputStream(journalFile), 1 << 16);
+            try {
+                ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+                while (readLine(inputStream, line)) {
+                    String[] fields = parseCheckpoint(line.toByteArray(), crc);
+                    if (fields == null)
+                        break;
+
+                    long checkpointOutputLength = Long.parseLong(fields[0]);
+                    if (checkpointOutputLength > availableOutputLength)
+                        break;
+
+                    for (int i = 1; i < fields.length; i++)
+                        completedIds.add(unescape(fields[i]));
+                    outputLength = checkpointOutputLength;
+                    validLength += line.size() + 1;
+                }
+            }
+            finally {
+                inputStream.close();
+            }
+
+            // drop the checkpoints that cannot be trusted
+            if (validLength < journalFile.length())
+                truncate(journalFile, validLength);
+        }
+
+        return new ProgressJournal(new FileOutputStream(journalFile, true), completedIds, outputLength);
+    }
+
+    /**
+     * @return True if the page was completed by a previous run
+     */
+    public boolean isCompleted(String id) {
+        return _completedIds.contains(id);
+    }
+
+    /**
+     * @return The number of pages completed by previous runs
+     */
+    public int getCompletedCount() {
+        return _completedIds.size();
+    }
+
+    /**
+     * @return The length of the result file at the last checkpoint of the previous runs (0 for a new journal)
+     */
+    public long getOutputLength() {
+        return _outputLength;
+    }
+
+    /**
+     * Truncates the result file to its length at the last checkpoint, dropping the results written after it
+     *
+     * @param outputFile The result file
+     */
+    public void restoreOutput(File outputFile) throws IOException {
+        if (outputFile.length() > _outputLength)
+            truncate(outputFile, _outputLength);
+    }
+
+    /**
+     * Records that the result of a page was written, to be journaled at the next checkpoint
+     *
+     * @param id The page id
+     */
+    public synchronized void complete(String id) {
+        _pendingIds.add(id);
+    }
+
+    /**
+     * Journals the pages completed since the last checkpoint, once their results have been flushed
+     *
+     * @param outputLength The length of the result file holding the results of all the completed pages
+     *                     (or 0 if the results are not written to a file)
+     */
+    public synchronized void checkpoint(long outputLength) throws IOException {
+        if (_pendingIds.isEmpty())
+            return;
+
+        StringBuilder record = new StringBuilder().append(outputLength);
+        for (String id : _pendingIds)
+            escape(record.append('\t'), id);
+        byte[] bytes = record.toString().getBytes(Charsets.UTF_8);
+
+        _crc.reset();
+        _crc.update(bytes);
+        _outputStream.write(String.format("%08x ", _crc.getValue()).getBytes(Charsets.US_ASCII));
+        _outputStream.write(bytes);
+        _outputStream.write('\n');
+        _outputStream.flush();
+        _outputStream.getChannel().force(false);
+
+        _pendingIds.clear();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        _outputStream.close();
+    }
+
+    // returns false at the end of the journal, or at a torn last line
+    private static boolean readLine(InputStream inputStream, ByteArrayOutputStream line) throws IOException {
+        line.reset();
+        int b;
+        while ((b = inputStream.read()) >= 0) {
+            if (b == '\n')
+                return true;
+            line.write(b);
+        }
+
+        return false;
+    }
+
+    // returns the fields of the checkpoint record, or null if the checkpoint is corrupt
+    private static String[] parseCheckpoint(byte[] line, CRC32 crc) {
+        if (line.length < 10 || line[8] != ' ')
+            return null;
+
+        crc.reset();
+        crc.update(line, 9, line.length - 9);
+        try {
+            if (Long.parseLong(new String(line, 0, 8, Charsets.US_ASCII), 16) != crc.getValue())
+                return null;
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+
+        String[] fields = new String(line, 9, line.length - 9, Charsets.UTF_8).split("\t", -1);
+        try {
+            Long.parseLong(fields[0]);
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+
+        return fields;
+    }
+
+    private static void escape(StringBuilder builder, String id) {
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            switch (c) {
+                case '\\': builder.append("\\\\"); break;
+                case '\t': builder.append("\\t"); break;
+                case '\n': builder.append("\\n"); break;
+                case '\r': builder.append("\\r"); break;
+                default: builder.append(c);
+            }
+        }
+    }
+
+    private static String unescape(String escapedId) {
+        if (escapedId.indexOf('\\') < 0)
+            return escapedId;
+
+        StringBuilder id = new StringBuilder(escapedId.length());
+        for (int i = 0; i < escapedId.length(); i++) {
+            char c = escapedId.charAt(i);
+            if (c == '\\' && i + 1 < escapedId.length()) {
+                c = escapedId.charAt(++i);
+                if (c == 't')
+                    c = '\t';
+                else if (c == 'n')
+                    c = '\n';
+                else if (c == 'r')
+                    c = '\r';
+            }
+            id.append(c);
+        }
+
+        return id.toString();
+    }
+
+    private static void truncate(File file, long length) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(length);
+        }
+        catch (IOException e) {
+            throw new IOException("Cannot truncate " + file, e);
+        }
+        finally {
+            randomAccessFile.close();
+        }
+    }
+}
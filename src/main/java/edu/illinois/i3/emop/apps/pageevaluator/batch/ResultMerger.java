@@ -0,0 +1,292 @@
+package edu.illinois.i3.emop.apps.pageevaluator.batch;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import edu.illinois.i3.emop.apps.pageevaluator.OCRPageStats;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Merges the result files written by the shards of a corpus run (see {@link PageShards}) into a single result file,
+ * summing up the statistics of the pages of each shard and of the whole corpus.
+ *
+ * The result files must all be CSV files with the same columns, whose lines are copied as they are (so additional
+ * columns are kept), or all binary result files. The statistics of the failed pages are not summed up, nor are
+ * those of the aggregated volume rows of volume mode, which follow the rows of their pages (with id "file#pageId"),
+ * as their pages are already summed up.
+ */
+public final class ResultMerger {
+
+    /**
+     * The summed up statistics of the pages of a result file, or of the corpus
+     */
+    public static class Summary {
+        private final String _name;
+        private final OCRPageStats _pageStats = new OCRPageStats();
+        private int _pageCount;
+        private int _failedCount;
+
+        private Summary(String name) {
+            _name = name;
+        }
+
+        private void add(OCRPageStats pageStats) {
+            _pageStats.merge(pageStats);
+            _pageCount++;
+        }
+
+        private void addFailure() {
+            _pageCount++;
+            _failedCount++;
+        }
+
+        private void add(Summary summary) {
+            _pageStats.merge(summary._pageStats);
+            _pageCount += summary._pageCount;
+            _failedCount += summary._failedCount;
+        }
+
+        public String getName() {
+            return _name;
+        }
+
+        /**
+         * @return The sums of the counts of the scored pages, whose scores are those of the pages as a whole
+         */
+        public OCRPageStats getPageStats() {
+            return _pageStats;
+        }
+
+        public int getPageCount() {
+            return _pageCount;
+        }
+
+        public int getFailedCount() {
+            return _failedCount;
+        }
+    }
+
+    public static final String CORPUS = "corpus";
+
+    private static final String[] COUNT_COLUMNS = new OCRPageStats().getNames();
+
+    private ResultMerger() { }
+
+    /**
+     * @param resultFiles The result files of the shards
+     * @param outputFile The merged result file
+     * @return The summary of each result file, followed by the summary of the corpus (named {@link #CORPUS})
+     * @throws IOException If a file cannot be read or written, or if the result files are not compatible
+     */
+    public static List<Summary> merge(List<File> resultFiles, File outputFile) throws IOException {
+        if (resultFiles.isEmpty())
+            throw new IllegalArgumentException("No result files to merge");
+
+        boolean binary = isBinary(resultFiles.get(0));
+        for (File resultFile : resultFiles)
+            if (isBinary(resultFile) != binary)
+                throw new IOException("Cannot merge CSV and binary result files: " + resultFile);
+
+        List<Summary> summaries = binary ? mergeBinary(resultFiles, outputFile) : mergeCsv(resultFiles, outputFile);
+
+        Summary corpus = new Summary(CORPUS);
+        for (Summary summary : summaries)
+            corpus.add(summary);
+        summaries.add(corpus);
+
+        return summaries;
+    }
+
+    private static List<Summary> mergeBinary(List<File> resultFiles, File outputFile) throws IOException {
+        List<Summary> summaries = Lists.newArrayList();
+        BinaryResultWriter resultWriter = new BinaryResultWriter(
+                new BufferedOutputStream(new FileOutputStream(outputFile), 1 << 16), BinaryResultWriter.DEFAULT_BLOCK_SIZE);
+        try {
+            for (File resultFile : resultFiles) {
+                Summary summary = new Summary(resultFile.getPath());
+                Set<String> volumes = Sets.newHashSet();
+                BinaryResultReader resultReader = BinaryResultReader.open(resultFile);
+                try {
+                    while (resultReader.hasNext()) {
+                        BinaryResultReader.Block block = resultReader.next();
+                        for (int row = 0; row < block.getRowCount(); row++) {
+                            if (block.isFailed(row)) {
+                                resultWriter.writeFailure(block.getId(row), new Exception(block.getError(row)));
+                                summary.addFailure();
+                            }
+                            else {
+                                OCRPageStats pageStats = block.getPageStats(row);
+                                resultWriter.writeResult(block.getId(row), pageStats);
+                                if (!isVolumeRow(block.getId(row), volumes))
+                                    summary.add(pageStats);
+                            }
+                        }
+                    }
+
+                    if (resultReader.isTruncated())
+                        throw new IOException("Truncated result file: " + resultFile);
+                }
+                finally {
+                    resultReader.close();
+                }
+                summaries.add(summary);
+            }
+        }
+        finally {
+            resultWriter.close();
+        }
+
+        return summaries;
+    }
+
+    private static List<Summary> mergeCsv(List<File> resultFiles, File outputFile) throws IOException {
+        List<Summary> summaries = Lists.newArrayList();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFile), Charsets.UTF_8));
+        try {
+            StringBuilder record = new StringBuilder();
+            List<String> header = null;
+            int[] countIndexes = new int[COUNT_COLUMNS.length];
+
+            for (File resultFile : resultFiles) {
+                Summary summary = new Summary(resultFile.getPath());
+                Set<String> volumes = Sets.newHashSet();
+                Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(resultFile), Charsets.UTF_8));
+                try {
+                    List<String> fileHeader = readRecord(reader, record);
+                    if (fileHeader == null)
+                        throw new IOException("Empty result file: " + resultFile);
+
+                    if (header == null) {
+                        header = fileHeader;
+                        for (int i = 0; i < COUNT_COLUMNS.length; i++)
+                            if ((countIndexes[i] = header.indexOf(COUNT_COLUMNS[i])) < 0)
+                                throw new IOException("Not a result file: " + resultFile);
+                        writer.write(record.toString());
+                    }
+                    else if (!fileHeader.equals(header))
+                        throw new IOException("The columns of " + resultFile + " differ from those of " + resultFiles.get(0));
+
+                    List<String> fields;
+                    while ((fields = readRecord(reader, record)) != null) {
+                        if (fields.size() != header.size())
+                            throw new IOException("Malformed line in " + resultFile + ": " + record);
+
+                        writer.write(record.toString());
+                        if (!fields.get(fields.size() - 1).isEmpty() || fields.get(countIndexes[0]).isEmpty()) {
+                            summary.addFailure();
+                            continue;
+                        }
+                        if (isVolumeRow(fields.get(0), volumes))
+                            continue;
+
+                        int[] counts = new int[COUNT_COLUMNS.length];
+                        for (int i = 0; i < counts.length; i++)
+                            counts[i] = Integer.parseInt(fields.get(countIndexes[i]));
+                        OCRPageStats pageStats = new OCRPageStats();
+                        pageStats.setCounts(counts);
+                        summary.add(pageStats);
+                    }
+                }
+                catch (NumberFormatException e) {
+                    throw new IOException("Malformed count in " + resultFile + ": " + record, e);
+                }
+                finally {
+                    reader.close();
+                }
+                summaries.add(summary);
+            }
+        }
+        finally {
+            writer.close();
+        }
+
+        return summaries;
+    }
+
+    // returns true if the row is the aggregated row of a volume whose page rows were read (whose ids are added to
+    // the volumes being read)
+    private static boolean isVolumeRow(String id, Set<String> volumes) {
+        int volumeEnd = id.indexOf('#');
+        if (volumeEnd >= 0) {
+            volumes.add(id.substring(0, volumeEnd));
+            return false;
+        }
+
+        return volumes.remove(id);
+    }
+
+    // reads the fields of the next (possibly multi-line) CSV record, keeping its raw text; returns null at the end
+    private static List<String> readRecord(Reader reader, StringBuilder record) throws IOException {
+        record.setLength(0);
+        List<String> fields = Lists.newArrayList();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        int c;
+        while ((c = reader.read()) >= 0) {
+            record.append((char) c);
+            if (quoted) {
+                if (c != '"')
+                    field.append((char) c);
+                else {
+                    reader.mark(1);
+                    int next = reader.read();
+                    if (next == '"') {
+                        record.append('"');
+                        field.append('"');
+                    }
+                    else {
+                        quoted = false;
+                        if (next >= 0)
+                            reader.reset();
+                    }
+                }
+            }
+            else if (c == '"')
+                quoted = true;
+            else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            }
+            else if (c == '\n') {
+                fields.add(field.toString());
+                return fields;
+            }
+            else if (c != '\r')
+                field.append((char) c);
+        }
+
+        if (record.length() == 0)
+            return null;
+
+        // a last line without line break
+        record.append('\n');
+        fields.add(field.toString());
+
+        return fields;
+    }
+
+    private static boolean isBinary(File resultFile) throws IOException {
+        DataInputStream inputStream = new DataInputStream(new FileInputStream(resultFile));
+        try {
+            return resultFile.length() >= 4 && inputStream.readInt() == BinaryResultWriter.MAGIC;
+        }
+        finally {
+            inputStream.close();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package edu.illinois.i3.emop.apps.pageevaluator.batch;
+
+import edu.illinois.i3.emop.apps.pageevaluator.OCRPageStats;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Receives the results of a batch run. Implementations must be safe for use by multiple worker threads.
+ */
+public interface ResultWriter extends Closeable {
+
+    void writeResult(String id, OCRPageStats pageStats) throws IOException;
+
+    void writeFailure(String id, Throwable error) throws IOException;
+
+    void flush() throws IOException;
+
+}
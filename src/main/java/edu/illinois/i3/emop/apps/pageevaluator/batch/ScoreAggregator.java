@@ -0,0 +1,292 @@
+package edu.illinois.i3.emop.apps.pageevaluator.batch;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import edu.illinois.i3.emop.apps.pageevaluator.OCRPageStats;
+import edu.illinois.i3.emop.apps.pageevaluator.hocr.HOCRPageStats;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Aggregates the results of the pages written by another result writer by group (OCR engine, volume or directory),
+ * as well as for the whole corpus: the counts of each group are summed up and the distributions of its scores are
+ * kept in {@link ScoreHistogram}s, so the memory used does not depend on the number of pages. The number of groups
+ * of each kind is bounded too, the pages of the groups seen after the maximum is reached being aggregated in the
+ * {@link #OTHER_GROUP} group.
+ *
+ * The OCR engine of a page is that of its hOCR metadata (which is empty for other formats). The volume of a page is the volume file in volume mode (whose aggregated volume
+ * results are not added again), the archive of an archive entry, and otherwise the directory of the page, in which
+ * the pages of a volume are usually stored. Safe for use by multiple worker threads.
+ */
+public class ScoreAggregator implements ResultWriter {
+
+    public enum GroupBy {
+        ENGINE, VOLUME, DIRECTORY
+    }
+
+    /**
+     * The summed up counts and the score distributions of the pages of a group
+     */
+    public static class Group {
+        private final String _groupBy;
+        private final String _name;
+        private final OCRPageStats _pageStats = new OCRPageStats();
+        private final ScoreHistogram _correctableScores = new ScoreHistogram();
+        private final ScoreHistogram _qualityScores = new ScoreHistogram();
+        private int _pageCount;
+        private int _failedCount;
+
+        private Group(String groupBy, String name) {
+            _groupBy = groupBy;
+            _name = name;
+        }
+
+        private void add(OCRPageStats pageStats) {
+            // only the counts are summed up, not the statistics of the collectors
+            OCRPageStats counts = new OCRPageStats();
+            counts.setCounts(pageStats.getCounts());
+            _pageStats.merge(counts);
+            _correctableScores.add(pageStats.getCorrectableScore());
+            _qualityScores.add(pageStats.getQualityScore());
+            _pageCount++;
+        }
+
+        private void addFailure() {
+            _pageCount++;
+            _failedCount++;
+        }
+
+        /**
+         * @return The kind of group ("corpus", "engine", "volume" or "directory")
+         */
+        public String getGroupBy() {
+            return _groupBy;
+        }
+
+        public String getName() {
+            return _name;
+        }
+
+        /**
+         * @return The sums of the counts of the scored pages, whose scores are those of the pages as a whole
+         */
+        public OCRPageStats getPageStats() {
+            return _pageStats;
+        }
+
+        public ScoreHistogram getCorrectableScores() {
+            return _correctableScores;
+        }
+
+        public ScoreHistogram getQualityScores() {
+            return _qualityScores;
+        }
+
+        public int getPageCount() {
+            return _pageCount;
+        }
+
+        public int getFailedCount() {
+            return _failedCount;
+        }
+    }
+
+    public static final String CORPUS = "corpus";
+    public static final String OTHER_GROUP = "(other)";
+    public static final double[] QUANTILES = { 0.05, 0.25, 0.5, 0.75, 0.95 };
+
+    private final ResultWriter _resultWriter;
+    private final List<GroupBy> _groupBys;
+    private final int _maxGroups;
+    private final boolean _volumeMode;
+    private final Group _corpus = new Group(CORPUS, "");
+    private final Map<GroupBy, Map<String, Group>> _groups = new EnumMap<>(GroupBy.class);
+
+    /**
+     * @param resultWriter The writer of the results
+     * @param groupBys The kinds of groups to aggregate the pages by
+     * @param maxGroups The maximum number of groups of each kind
+     * @param volumeMode True if the results are those of volume mode
+     */
+    public ScoreAggregator(ResultWriter resultWriter, List<GroupBy> groupBys, int maxGroups, boolean volumeMode) {
+        if (maxGroups <= 0)
+            throw new IllegalArgumentException("The maximum number of groups must be positive");
+
+        _resultWriter = resultWriter;
+        _groupBys = Lists.newArrayList(groupBys);
+        _maxGroups = maxGroups;
+        _volumeMode = volumeMode;
+        for (GroupBy groupBy : _groupBys)
+            _groups.put(groupBy, Maps.<String, Group>newTreeMap());
+    }
+
+    @Override
+    public synchronized void writeResult(String id, OCRPageStats pageStats) throws IOException {
+        _resultWriter.writeResult(id, pageStats);
+
+        // the aggregated results of a volume, whose pages were already added
+        if (_volumeMode && id.indexOf('#') < 0)
+            return;
+
+        _corpus.add(pageStats);
+        for (GroupBy groupBy : _groupBys)
+            getGroup(groupBy, id, pageStats).add(pageStats);
+    }
+
+    @Override
+    public synchronized void writeFailure(String id, Throwable error) throws IOException {
+        _resultWriter.writeFailure(id, error);
+
+        _corpus.addFailure();
+        for (GroupBy groupBy : _groupBys)
+            getGroup(groupBy, id, null).addFailure();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        _resultWriter.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        _resultWriter.close();
+    }
+
+    /**
+     * @return The corpus group, followed by the groups of each kind (sorted by name)
+     */
+    public synchronized List<Group> getGroups() {
+        List<Group> groups = Lists.newArrayList(_corpus);
+        for (GroupBy groupBy : _groupBys) {
+            Map<String, Group> groupsByName = _groups.get(groupBy);
+            Group other = groupsByName.get(OTHER_GROUP);
+            for (Group group : groupsByName.values())
+                if (group != other)
+                    groups.add(group);
+            if (other != null)
+                groups.add(other);
+        }
+
+        return groups;
+    }
+
+    /**
+     * Writes the aggregated results as CSV: for each group, its page counts, its scores (from its summed up counts),
+     * the {@link #QUANTILES} of the scores of its pages, and its summed up counts
+     */
+    public void writeReport(Writer writer) throws IOException {
+        StringBuilder header = new StringBuilder("groupBy,group,pages,failed,correctable,quality");
+        for (String score : new String[] { "correctable", "quality" })
+            for (double quantile : QUANTILES)
+                header.append(',').append(score).append(String.format(Locale.ROOT, "P%02d", Math.round(quantile * 100)));
+        for (String name : _corpus.getPageStats().getNames())
+            header.append(',').append(name);
+        writer.write(header.append('\n').toString());
+
+        for (Group group : getGroups()) {
+            OCRPageStats pageStats = group.getPageStats();
+            StringBuilder line = new StringBuilder()
+                    .append(group.getGroupBy()).append(',')
+                    .append(BatchResultWriter.escape(group.getName())).append(',')
+                    .append(group.getPageCount()).append(',')
+                    .append(group.getFailedCount()).append(',')
+                    .append(String.format(Locale.ROOT, "%f,%f", pageStats.getCorrectableScore(), pageStats.getQualityScore()));
+            for (ScoreHistogram scores : new ScoreHistogram[] { group.getCorrectableScores(), group.getQualityScores() })
+                for (double quantile : QUANTILES) {
+                    double score = scores.getQuantile(quantile);
+                    line.append(',');
+                    if (!Double.isNaN(score))
+                        line.append(String.format(Locale.ROOT, "%f", score));
+                }
+            for (int count : pageStats.getCounts())
+                line.append(',').append(count);
+            writer.write(line.append('\n').toString());
+        }
+    }
+
+    private Group getGroup(GroupBy groupBy, String id, OCRPageStats pageStats) {
+        String name;
+        switch (groupBy) {
+            case ENGINE:
+                name = pageStats instanceof HOCRPageStats ? ((HOCRPageStats) pageStats).getOcrEngine() : "";
+                break;
+
+            case VOLUME:
+                name = getVolume(id);
+                break;
+
+            case DIRECTORY:
+                name = getDirectory(id);
+                break;
+
+            default:
+                throw new IllegalArgumentException("Unsupported group: " + groupBy);
+        }
+
+        Map<String, Group> groups = _groups.get(groupBy);
+        Group group = groups.get(name);
+        if (group == null) {
+            // the other group does not count towards the maximum
+            if (groups.size() - (groups.containsKey(OTHER_GROUP) ? 1 : 0) >= _maxGroups)
+                name = OTHER_GROUP;
+
+            group = groups.get(name);
+            if (group == null) {
+                group = new Group(groupBy.name().toLowerCase(Locale.ROOT), name);
+                groups.put(name, group);
+            }
+        }
+
+        return group;
+    }
+
+    private String getVolume(String id) {
+        int volumeEnd = _volumeMode ? id.indexOf('#') : -1;
+        if (volumeEnd >= 0)
+            return id.substring(0, volumeEnd);
+
+        String archive = getArchive(id);
+        if (archive != null)
+            return archive;
+
+        return getDirectory(id);
+    }
+
+    private String getDirectory(String id) {
+        String path = id;
+        int volumeEnd = _volumeMode ? id.indexOf('#') : -1;
+        if (volumeEnd >= 0)
+            path = id.substring(0, volumeEnd);
+
+        // the directories of archive entries are within their archive
+        int start = 0;
+        String archive = getArchive(path);
+        if (archive != null)
+            start = archive.length() + 1;
+
+        int directoryEnd = path.lastIndexOf('/');
+        if (directoryEnd < start)
+            return start > 0 ? archive : ".";
+
+        return path.substring(0, directoryEnd);
+    }
+
+    // returns the archive of an archive entry id, or null
+    private static String getArchive(String id) {
+        int entryStart = id.indexOf('!');
+        while (entryStart >= 0) {
+            String archive = id.substring(0, entryStart);
+            if (PageArchive.isArchive(new File(archive)))
+                return archive;
+            entryStart = id.indexOf('!', entryStart + 1);
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,75 @@
+package edu.illinois.i3.emop.apps.pageevaluator.batch;
+
+/**
+ * A histogram of page scores (from 0 to 1) in {@link #BIN_COUNT} bins of equal width, from which the quantiles
+ * of the scores are estimated within the width of a bin. It takes the same memory however many scores are added,
+ * and histograms are merged by adding their bins, so the distribution of a corpus can be computed from those of
+ * its parts. The undefined scores (-1, for pages without tokens) are only counted. Not thread safe.
+ */
+public class ScoreHistogram {
+
+    public static final int BIN_COUNT = 500;
+
+    private final int[] _binCounts = new int[BIN_COUNT];
+    private long _count;
+    private long _undefinedCount;
+    private float _min = Float.POSITIVE_INFINITY;
+    private float _max = Float.NEGATIVE_INFINITY;
+
+    public void add(float score) {
+        if (score < 0 || score > 1 || Float.isNaN(score)) {
+            _undefinedCount++;
+            return;
+        }
+
+        _binCounts[Math.min((int) (score * BIN_COUNT), BIN_COUNT - 1)]++;
+        _count++;
+        _min = Math.min(_min, score);
+        _max = Math.max(_max, score);
+    }
+
+    public void merge(ScoreHistogram other) {
+        for (int i = 0; i < BIN_COUNT; i++)
+            _binCounts[i] += other._binCounts[i];
+        _count += other._count;
+        _undefinedCount += other._undefinedCount;
+        _min = Math.min(_min, other._min);
+        _max = Math.max(_max, other._max);
+    }
+
+    /**
+     * @return The number of (defined) scores
+     */
+    public long getCount() {
+        return _count;
+    }
+
+    public long getUndefinedCount() {
+        return _undefinedCount;
+    }
+
+    /**
+     * @param quantile The quantile, from 0 to 1
+     * @return The estimated score of the quantile (interpolated within its bin), or NaN if there are no scores
+     */
+    public double getQuantile(double quantile) {
+        if (quantile < 0 || quantile > 1)
+            throw new IllegalArgumentException("The quantile must be between 0 and 1");
+
+        if (_count == 0)
+            return Double.NaN;
+
+        double rank = quantile * _count;
+        long cumulativeCount = 0;
+        for (int i = 0; i < BIN_COUNT; i++) {
+            int binCount = _binCounts[i];
+            if (binCount > 0 && cumulativeCount + binCount >= rank) {
+                double score = (i + (rank - cumulativeCount) / binCount) / BIN_COUNT;
+                return Math.max(_min, Math.min(_max, score));
+            }
+            cumulativeCount += binCount;
+        }
+
+        return _max;
+    }
+}
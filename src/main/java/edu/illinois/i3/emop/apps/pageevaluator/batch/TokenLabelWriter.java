@@ -0,0 +1,132 @@
+package edu.illinois.i3.emop.apps.pageevaluator.batch;
+
+import com.google.common.base.Charsets;
+import edu.illinois.i3.emop.apps.pageevaluator.OCRPageStats;
+import edu.illinois.i3.emop.apps.pageevaluator.classifier.TokenCategory;
+import edu.illinois.i3.emop.apps.pageevaluator.collector.StatisticsCollector;
+import edu.illinois.i3.emop.apps.pageevaluator.collector.TokenLabelCollector;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes the token labels recorded by the {@link TokenLabelCollector} of every scored page to a compact binary
+ * stream, as the results of the pages are written by another result writer:
+ *
+ * <pre>
+ *   stream := MAGIC VERSION page*
+ *   page   := pageId tokenKind tokenCount token[tokenCount]
+ *   token  := tokenId category      (tokenKind = WORD_IDS)
+ *           | offset category       (tokenKind = OFFSETS)
+ *           | category              (tokenKind = INDEXES)
+ * </pre>
+ *
+ * MAGIC and VERSION are big-endian ints, the token kind is a byte, counts and offsets are unsigned varints, ids are
+ * varint length prefixed UTF-8 strings and categories are a byte, the ordinal of the {@link TokenCategory}. The tokens
+ * of hOCR pages are identified by their word id (the empty string for the words that have no id), those of text pages
+ * by their offset in the page text, i.e. its trimmed non-blank lines, each followed by a line break, with the words
+ * hyphenated across lines joined (see {@link edu.illinois.i3.emop.apps.pageevaluator.txt.TxtToken#getOffset}),
+ * and the other tokens (and those of the hOCR pages without word ids) by their index on the page. The labels of each page are written (and flushed)
+ * as soon as the page is scored, so the stream can be consumed while the batch runs.
+ * Safe for use by multiple worker threads.
+ */
+public class TokenLabelWriter implements ResultWriter {
+
+    static final int MAGIC = 0x5045544c; // "PETL"
+    static final int VERSION = 2;
+
+    // the kinds of token identification
+    static final int WORD_IDS = 0;
+    static final int OFFSETS = 1;
+    static final int INDEXES = 2;
+
+    private final ResultWriter _resultWriter;
+    private final DataOutputStream _labelStream;
+
+    /**
+     * @param resultWriter The writer of the results
+     * @param labelStream The stream to write the token labels to
+     */
+    public TokenLabelWriter(ResultWriter resultWriter, OutputStream labelStream) throws IOException {
+        _resultWriter = resultWriter;
+        _labelStream = new DataOutputStream(labelStream);
+        _labelStream.writeInt(MAGIC);
+        _labelStream.writeInt(VERSION);
+    }
+
+    @Override
+    public synchronized void writeResult(String id, OCRPageStats pageStats) throws IOException {
+        _resultWriter.writeResult(id, pageStats);
+
+        for (StatisticsCollector collector : pageStats.getCollectors())
+            if (collector instanceof TokenLabelCollector)
+                writeLabels(id, (TokenLabelCollector) collector);
+    }
+
+    @Override
+    public void writeFailure(String id, Throwable error) throws IOException {
+        _resultWriter.writeFailure(id, error);
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        _resultWriter.flush();
+        _labelStream.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            _resultWriter.close();
+        }
+        finally {
+            _labelStream.close();
+        }
+    }
+
+    private void writeLabels(String id, TokenLabelCollector labels) throws IOException {
+        writeString(id);
+        int tokenCount = labels.getTokenCount();
+        int tokenKind = getTokenKind(labels);
+        _labelStream.writeByte(tokenKind);
+        writeVarInt(tokenCount);
+        for (int i = 0; i < tokenCount; i++) {
+            if (tokenKind == WORD_IDS) {
+                String tokenId = labels.getTokenId(i);
+                writeString(tokenId != null ? tokenId : "");
+            }
+            else if (tokenKind == OFFSETS)
+                writeVarInt(labels.getTokenOffset(i));
+            _labelStream.writeByte(labels.getCategoryCode(i));
+        }
+        _labelStream.flush();
+    }
+
+    // the tokens of a page are all of the same kind
+    private static int getTokenKind(TokenLabelCollector labels) {
+        int tokenCount = labels.getTokenCount();
+        if (tokenCount > 0 && labels.getTokenOffset(0) >= 0)
+            return OFFSETS;
+
+        for (int i = 0; i < tokenCount; i++)
+            if (labels.getTokenId(i) != null)
+                return WORD_IDS;
+
+        return INDEXES;
+    }
+
+    private void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(Charsets.UTF_8);
+        writeVarInt(bytes.length);
+        _labelStream.write(bytes);
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            _labelStream.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        _labelStream.writeByte(value);
+    }
+}
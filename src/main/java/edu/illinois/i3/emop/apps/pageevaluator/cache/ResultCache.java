@@ -0,0 +1,246 @@
+package edu.illinois.i3.emop.apps.pageevaluator.cache;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteSource;
+import com.google.common.io.Files;
+import com.google.common.primitives.Ints;
+import edu.illinois.i3.emop.apps.pageevaluator.Main.DocumentFormat;
+import edu.illinois.i3.emop.apps.pageevaluator.OCRPageStats;
+import edu.illinois.i3.emop.apps.pageevaluator.classifier.TokenClassifier;
+import edu.illinois.i3.emop.apps.pageevaluator.hocr.HOCRPageStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An on-disk cache of page statistics, keyed by the SHA-256 hash of the page file content, the page format,
+ * the version of the classification rules and the maximum length of the tokens they classify, so that re-scoring an unchanged page skips parsing and classification.
+ *
+ * Each entry is a small file holding the page statistics counts (and, for hOCR pages, the OCR engine). Entries are written to a uniquely named temporary file
+ * that is then renamed, so concurrent readers (and other processes sharing the cache directory) never see partial
+ * entries. The temporary files left behind by killed processes are deleted when a cache is opened, once they are
+ * older than {@link #STALE_TMP_MILLIS}, so those other processes are still writing are kept.
+ * The number of entries is bounded: the least recently used entries are evicted first (the access order is preserved
+ * across runs through the entry file modification times). Safe for use by multiple worker threads.
+ */
+public class ResultCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ResultCache.class);
+    private static final String TMP_SUFFIX = ".tmp";
+
+    public static final long STALE_TMP_MILLIS = 60 * 60 * 1000;
+
+    private final File _cacheDir;
+    private final int _maxEntries;
+    private final Map<String, File> _index;
+
+    private final AtomicLong _hitCount = new AtomicLong();
+    private final AtomicLong _missCount = new AtomicLong();
+    private final AtomicLong _evictionCount = new AtomicLong();
+
+    /**
+     * Opens (or creates) a result cache
+     *
+     * @param cacheDir The cache directory
+     * @param maxEntries The maximum number of cached pages
+     * @throws IOException If the cache directory cannot be created
+     */
+    public ResultCache(File cacheDir, final int maxEntries) throws IOException {
+        if (maxEntries <= 0)
+            throw new IllegalArgumentException("The maximum number of cache entries must be positive");
+
+        _cacheDir = cacheDir;
+        _maxEntries = maxEntries;
+        _index = new LinkedHashMap<String, File>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, File> eldest) {
+                if (size() <= _maxEntries)
+                    return false;
+
+                evict(eldest.getValue());
+                return true;
+            }
+        };
+
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs())
+            throw new IOException("Cannot create the cache directory " + cacheDir);
+
+        loadIndex();
+    }
+
+    /**
+     * Computes the cache key of a page
+     *
+     * @param pageSource The page content
+     * @param format The page format
+     * @param maxTokenLength The maximum length of the tokens classified by the rules (see
+     *                       {@link edu.illinois.i3.emop.apps.pageevaluator.classifier.BoundedTokenClassifier}),
+     *                       or 0 if unbounded
+     * @return The cache key
+     * @throws IOException If the page cannot be read
+     */
+    public String getKey(ByteSource pageSource, DocumentFormat format, int maxTokenLength) throws IOException {
+        Hasher hasher = Hashing.sha256().newHasher()
+                .putString(format.name(), Charsets.UTF_8)
+                .putInt(TokenClassifier.RULES_VERSION)
+                .putInt(maxTokenLength);
+        pageSource.copyTo(Funnels.asOutputStream(hasher));
+
+        return hasher.hash().toString();
+    }
+
+    /**
+     * @param key The cache key
+     * @return The cached page statistics, or null if the page is not in the cache
+     */
+    public OCRPageStats get(String key) {
+        File entryFile;
+        synchronized (this) {
+            entryFile = _index.get(key);
+        }
+
+        if (entryFile != null) {
+            try {
+                List<String> lines = Files.readLines(entryFile, Charsets.UTF_8);
+                List<String> values = Splitter.on(',').splitToList(lines.get(0));
+                int[] counts = new int[values.size()];
+                for (int i = 0; i < counts.length; i++)
+                    counts[i] = Integer.parseInt(values.get(i));
+
+                OCRPageStats pageStats;
+                if (lines.size() > 1) {
+                    HOCRPageStats hocrPageStats = new HOCRPageStats();
+                    hocrPageStats.setPageMetadata("", lines.get(1), Collections.<String>emptySet());
+                    pageStats = hocrPageStats;
+                }
+                else
+                    pageStats = new OCRPageStats();
+                pageStats.setCounts(counts);
+                entryFile.setLastModified(System.currentTimeMillis());
+                _hitCount.incrementAndGet();
+
+                return pageStats;
+            }
+            catch (IOException | RuntimeException e) {
+                // evicted by another thread or process, or corrupt
+                synchronized (this) {
+                    _index.remove(key);
+                }
+                entryFile.delete();
+            }
+        }
+
+        _missCount.incrementAndGet();
+
+        return null;
+    }
+
+    /**
+     * Adds the statistics of a page to the cache
+     *
+     * @param key The cache key
+     * @param pageStats The page statistics
+     * @throws IOException If the entry cannot be written
+     */
+    public void put(String key, OCRPageStats pageStats) throws IOException {
+        File entryFile = getEntryFile(key);
+        Files.createParentDirs(entryFile);
+        File tmpFile = File.createTempFile(key + ".", TMP_SUFFIX, entryFile.getParentFile());
+        String entry = Joiner.on(',').join(Ints.asList(pageStats.getCounts()));
+        if (pageStats instanceof HOCRPageStats)
+            entry += "\n" + ((HOCRPageStats) pageStats).getOcrEngine().replaceAll("[\r\n]", " ");
+        Files.write(entry, tmpFile, Charsets.UTF_8);
+
+        if (!tmpFile.renameTo(entryFile)) {
+            tmpFile.delete();
+            throw new IOException("Cannot create the cache entry " + entryFile);
+        }
+
+        synchronized (this) {
+            _index.put(key, entryFile);
+        }
+    }
+
+    public File getCacheDir() {
+        return _cacheDir;
+    }
+
+    public int getMaxEntries() {
+        return _maxEntries;
+    }
+
+    public synchronized int getSize() {
+        return _index.size();
+    }
+
+    public long getHitCount() {
+        return _hitCount.get();
+    }
+
+    public long getMissCount() {
+        return _missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return _evictionCount.get();
+    }
+
+    private File getEntryFile(String key) {
+        return new File(new File(_cacheDir, key.substring(0, 2)), key);
+    }
+
+    private void evict(File entryFile) {
+        _evictionCount.incrementAndGet();
+        if (!entryFile.delete() && entryFile.exists())
+            log.warn("Cannot delete cache entry {}", entryFile);
+    }
+
+    // adds the existing entries to the index, from the least to the most recently used
+    private void loadIndex() {
+        List<File> entryFiles = Lists.newArrayList();
+        long staleMillis = System.currentTimeMillis() - STALE_TMP_MILLIS;
+        for (File file : Files.fileTreeTraverser().preOrderTraversal(_cacheDir)) {
+            if (!file.isFile())
+                continue;
+
+            // the temporary files of killed processes (those of running processes are renamed shortly)
+            if (file.getName().endsWith(TMP_SUFFIX)) {
+                if (file.lastModified() < staleMillis)
+                    file.delete();
+            }
+            else
+                entryFiles.add(file);
+        }
+
+        final Map<File, Long> lastModified = new LinkedHashMap<>(entryFiles.size());
+        for (File entryFile : entryFiles)
+            lastModified.put(entryFile, entryFile.lastModified());
+
+        Collections.sort(entryFiles, new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                return Long.compare(lastModified.get(f1), lastModified.get(f2));
+            }
+        });
+
+        synchronized (this) {
+            for (File entryFile : entryFiles)
+                _index.put(entryFile.getName(), entryFile);
+        }
+
+    }
+}
@@ -0,0 +1,41 @@
+package edu.illinois.i3.emop.apps.pageevaluator.classifier;
+
+/**
+ * A token classifier that bounds the time spent on pathological tokens (e.g. the long runs of digits and punctuation
+ * of OCR garbage): tokens longer than a maximum length are classified in linear time by
+ * {@link FastTokenClassifier#classifyLinear}, the others by another classifier.
+ */
+public class BoundedTokenClassifier implements TokenClassifier {
+
+    private final TokenClassifier _tokenClassifier;
+    private final FastTokenClassifier _linearClassifier = new FastTokenClassifier();
+    private final int _maxTokenLength;
+
+    /**
+     * @param tokenClassifier The classifier of the tokens up to the maximum length
+     * @param maxTokenLength The maximum length of the tokens classified by the given classifier
+     */
+    public BoundedTokenClassifier(TokenClassifier tokenClassifier, int maxTokenLength) {
+        if (maxTokenLength <= 0)
+            throw new IllegalArgumentException("The maximum token length must be positive");
+
+        _tokenClassifier = tokenClassifier;
+        _maxTokenLength = maxTokenLength;
+    }
+
+    @Override
+    public TokenCategory classify(CharSequence token) {
+        if (token.length() > _maxTokenLength)
+            return _linearClassifier.classifyLinear(token);
+
+        return _tokenClassifier.classify(token);
+    }
+
+    public TokenClassifier getTokenClassifier() {
+        return _tokenClassifier;
+    }
+
+    public int getMaxTokenLength() {
+        return _maxTokenLength;
+    }
+}
@@ -0,0 +1,138 @@
+package edu.illinois.i3.emop.apps.pageevaluator.classifier;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+
+/**
+ * A token classifier that remembers the categories of the tokens classified by another classifier, so that
+ * the surface forms repeated throughout a corpus ("the", "and", "&c.") are classified by a single lookup.
+ *
+ * The cache is bounded by an estimate of the memory used by its entries, evicting the least recently used tokens
+ * first, and is safe to share between pages and worker threads. Tokens are looked up by their exact text, as any
+ * normalization (e.g. lowercasing) could change their category; tokens longer than {@link #MAX_CACHED_TOKEN_LENGTH}
+ * are rarely repeated, and are not cached. Lookups compare the token text in place, so only the tokens added to the cache
+ * are copied to a String.
+ */
+public class CachingTokenClassifier implements TokenClassifier {
+
+    public static final int MAX_CACHED_TOKEN_LENGTH = 32;
+
+    // estimated memory used by a cache entry, besides the characters of its token
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    private final TokenClassifier _tokenClassifier;
+    private final Cache<TokenKey, TokenCategory> _cache;
+
+    // the key used by each thread to look up tokens, which is never stored in the cache
+    private final ThreadLocal<TokenKey> _lookupKey = new ThreadLocal<TokenKey>() {
+        @Override
+        protected TokenKey initialValue() {
+            return new TokenKey();
+        }
+    };
+
+    /**
+     * @param tokenClassifier The classifier of the tokens not in the cache
+     * @param maxBytes The (approximate) maximum memory used by the cache
+     */
+    public CachingTokenClassifier(TokenClassifier tokenClassifier, long maxBytes) {
+        if (maxBytes <= 0)
+            throw new IllegalArgumentException("The token cache size must be positive");
+
+        _tokenClassifier = tokenClassifier;
+        _cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher(new Weigher<TokenKey, TokenCategory>() {
+                    @Override
+                    public int weigh(TokenKey token, TokenCategory category) {
+                        return ENTRY_OVERHEAD_BYTES + 2 * token.length();
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public TokenCategory classify(CharSequence token) {
+        if (token.length() > MAX_CACHED_TOKEN_LENGTH)
+            return _tokenClassifier.classify(token);
+
+        TokenKey lookupKey = _lookupKey.get().set(token);
+        TokenCategory category;
+        try {
+            category = _cache.getIfPresent(lookupKey);
+        }
+        finally {
+            lookupKey.set(null);
+        }
+
+        if (category == null) {
+            String text = token.toString();
+            category = _tokenClassifier.classify(text);
+            _cache.put(new TokenKey().set(text), category);
+        }
+
+        return category;
+    }
+
+    public TokenClassifier getTokenClassifier() {
+        return _tokenClassifier;
+    }
+
+    /**
+     * @return The hit, miss and eviction counts of the cache (tokens too long to be cached are not counted)
+     */
+    public CacheStats getStats() {
+        return _cache.stats();
+    }
+
+    public long getSize() {
+        return _cache.size();
+    }
+
+    // a token compared by its text, whatever the type of the character sequence holding it
+    private static class TokenKey {
+        private CharSequence _text;
+        private int _hash;
+
+        TokenKey set(CharSequence text) {
+            _text = text;
+            int hash = 0;
+            if (text != null)
+                for (int i = 0; i < text.length(); i++)
+                    hash = 31 * hash + text.charAt(i);
+            _hash = hash;
+
+            return this;
+        }
+
+        int length() {
+            return _text.length();
+        }
+
+        @Override
+        public int hashCode() {
+            return _hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof TokenKey))
+                return false;
+
+            CharSequence other = ((TokenKey) obj)._text;
+            int length = _text.length();
+            if (_hash != ((TokenKey) obj)._hash || other.length() != length)
+                return false;
+            for (int i = 0; i < length; i++)
+                if (_text.charAt(i) != other.charAt(i))
+                    return false;
+
+            return true;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package edu.illinois.i3.emop.apps.pageevaluator.classifier;
+
+import java.util.Locale;
+
+/**
+ * A token classifier that applies the same rules as {@link RegexTokenClassifier} by walking the code points
+ * of each token once, without regular expressions and without allocating.
+ *
+ * The few tokens for which the regular expressions do not operate on single code points
+ * (because of the canonical equivalence flag, which makes them match whole grapheme clusters) or for which
+ * lowercasing is context or locale sensitive are delegated to the reference classifier, unless they are classified
+ * by {@link #classifyLinear}.
+ */
+public class FastTokenClassifier implements TokenClassifier {
+
+    // states of the automaton recognizing the number based objects
+    // (equivalent to ^\p{Sc}?[\.,/\-]?(\p{N}+[\.,/%\-]?)+\p{Sc}?$)
+    private static final int NUM_START = 0;
+    private static final int NUM_LEADING_CURRENCY = 1;
+    private static final int NUM_LEADING_SEPARATOR = 2;
+    private static final int NUM_DIGITS = 3;
+    private static final int NUM_SEPARATOR = 4;
+    private static final int NUM_TRAILING_CURRENCY = 5;
+    private static final int NUM_REJECT = 6;
+
+    private final TokenClassifier _referenceClassifier = new RegexTokenClassifier();
+    private final boolean _localeSensitiveLowercase;
+
+    public FastTokenClassifier() {
+        // String.toLowerCase() has special rules for these languages
+        String language = Locale.getDefault().getLanguage();
+        _localeSensitiveLowercase = language.equals("tr") || language.equals("az") || language.equals("lt");
+    }
+
+    @Override
+    public TokenCategory classify(CharSequence token) {
+        return classify(token, true);
+    }
+
+    /**
+     * Classifies a token in time linear in its length, without ever delegating it to the reference classifier:
+     * grapheme clusters are classified code point by code point, lowercasing is locale insensitive, and a trailing
+     * line terminator is part of the token. The category only differs from that of {@link #classify} for the
+     * (rare) tokens that would have been delegated.
+     */
+    public TokenCategory classifyLinear(CharSequence token) {
+        return classify(token, false);
+    }
+
+    private TokenCategory classify(CharSequence token, boolean delegate) {
+        int length = token.length();
+
+        if (delegate && (_localeSensitiveLowercase || isLineTerminator(token.charAt(length - 1))))
+            return _referenceClassifier.classify(token);
+
+        if (length == 1 && isPunct(token.charAt(0)))
+            return TokenCategory.PUNCT;
+
+        // cleaning removes up to MAX_LEADING_PUNCT_TO_REMOVE leading and MAX_TRAILING_PUNCT_TO_REMOVE trailing punctuation
+        int cleanStart = 0;
+        while (cleanStart < MAX_LEADING_PUNCT_TO_REMOVE && cleanStart < length && isPunct(token.charAt(cleanStart)))
+            cleanStart++;
+        int cleanEnd = length;
+        while (length - cleanEnd < MAX_TRAILING_PUNCT_TO_REMOVE && cleanEnd > cleanStart && isPunct(token.charAt(cleanEnd - 1)))
+            cleanEnd--;
+
+        int numberState = NUM_START;
+        int codePointCount = 0;
+        boolean firstIsLetter = false;
+        boolean hasRepeatedChars = false;
+        int prevLowerCodePoint = -1;
+        int runLength = 0;
+        int nonAlphaCount = 0;
+
+        for (int i = 0; i < length; ) {
+            int codePoint = Character.codePointAt(token, i);
+
+            if (delegate && (codePoint == 0x0130 || codePoint == 0x03a3 || isGraphemeExtending(codePoint)))
+                return _referenceClassifier.classify(token);
+
+            boolean isLetter = Character.isLetter(codePoint);
+            boolean isNumber = isNumber(codePoint);
+
+            numberState = nextNumberState(numberState, codePoint, isNumber);
+
+            if (codePointCount++ == 0)
+                firstIsLetter = isLetter;
+
+            // lowercasing does not change whether a code point is a letter or a number
+            int lowerCodePoint = Character.toLowerCase(codePoint);
+            runLength = (lowerCodePoint == prevLowerCodePoint) ? runLength + 1 : 1;
+            prevLowerCodePoint = lowerCodePoint;
+            if (runLength >= 4 && !isNumber)
+                hasRepeatedChars = true;
+
+            if (i >= cleanStart && i < cleanEnd && !isLetter)
+                nonAlphaCount++;
+
+            i += Character.charCount(codePoint);
+        }
+
+        if (numberState == NUM_DIGITS || numberState == NUM_SEPARATOR || numberState == NUM_TRAILING_CURRENCY)
+            return TokenCategory.NUMBER_OBJECT;
+
+        if (codePointCount == 1 && firstIsLetter)
+            return TokenCategory.SINGLE_LETTER;
+
+        if (hasRepeatedChars)
+            return TokenCategory.REPEATED_CHARS;
+
+        int cleanTokenLength = cleanEnd - cleanStart;
+
+        if (nonAlphaCount == cleanTokenLength)
+            return TokenCategory.NON_ALPHA;
+
+        if (cleanTokenLength < CLEAN_TOKEN_LEN_THRESHOLD)
+            return TokenCategory.CLEAN_SHORT_WORD;
+
+        switch (nonAlphaCount) {
+            case 0:
+                return TokenCategory.CLEAN_ALL_ALPHA;
+
+            case 1:
+                return TokenCategory.CLEAN_ONE_NON_ALPHA;
+
+            case 2:
+                return TokenCategory.CLEAN_TWO_NON_ALPHA;
+
+            default:
+                return TokenCategory.CLEAN_THREE_OR_MORE_NON_ALPHA;
+        }
+    }
+
+    private static int nextNumberState(int state, int codePoint, boolean isNumber) {
+        switch (state) {
+            case NUM_START:
+                if (isNumber) return NUM_DIGITS;
+                if (isLeadingNumberSeparator(codePoint)) return NUM_LEADING_SEPARATOR;
+                if (isCurrency(codePoint)) return NUM_LEADING_CURRENCY;
+                return NUM_REJECT;
+
+            case NUM_LEADING_CURRENCY:
+                if (isNumber) return NUM_DIGITS;
+                if (isLeadingNumberSeparator(codePoint)) return NUM_LEADING_SEPARATOR;
+                return NUM_REJECT;
+
+            case NUM_LEADING_SEPARATOR:
+                return isNumber ? NUM_DIGITS : NUM_REJECT;
+
+            case NUM_DIGITS:
+                if (isNumber) return NUM_DIGITS;
+                if (isLeadingNumberSeparator(codePoint) || codePoint == '%') return NUM_SEPARATOR;
+                if (isCurrency(codePoint)) return NUM_TRAILING_CURRENCY;
+                return NUM_REJECT;
+
+            case NUM_SEPARATOR:
+                if (isNumber) return NUM_DIGITS;
+                if (isCurrency(codePoint)) return NUM_TRAILING_CURRENCY;
+                return NUM_REJECT;
+
+            default:
+                return NUM_REJECT;
+        }
+    }
+
+    // \p{Punct}: POSIX (US-ASCII only) punctuation
+    private static boolean isPunct(char c) {
+        return (c >= '!' && c <= '/') || (c >= ':' && c <= '@') || (c >= '[' && c <= '`') || (c >= '{' && c <= '~');
+    }
+
+    // \p{N}
+    private static boolean isNumber(int codePoint) {
+        switch (Character.getType(codePoint)) {
+            case Character.DECIMAL_DIGIT_NUMBER:
+            case Character.LETTER_NUMBER:
+            case Character.OTHER_NUMBER:
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    // \p{Sc}
+    private static boolean isCurrency(int codePoint) {
+        return Character.getType(codePoint) == Character.CURRENCY_SYMBOL;
+    }
+
+    private static boolean isLeadingNumberSeparator(int codePoint) {
+        return codePoint == '.' || codePoint == ',' || codePoint == '/' || codePoint == '-';
+    }
+
+    // '$' also matches before a final line terminator
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == 0x2028 || c == 0x2029;
+    }
+
+    // code points that can join a grapheme cluster with a neighbouring code point
+    private static boolean isGraphemeExtending(int codePoint) {
+        if (codePoint < 0x0300)
+            return codePoint == '\r';
+
+        switch (Character.getType(codePoint)) {
+            case Character.NON_SPACING_MARK:
+            case Character.ENCLOSING_MARK:
+            case Character.COMBINING_SPACING_MARK:
+            case Character.FORMAT:
+                return true;
+        }
+
+        return (codePoint >= 0x1100 && codePoint <= 0x11ff)       // Hangul jamo
+                || (codePoint >= 0xa960 && codePoint <= 0xa97f)
+                || (codePoint >= 0xd7b0 && codePoint <= 0xd7ff)
+                || codePoint == 0x0d4e || codePoint == 0x0e33 || codePoint == 0x0eb3
+                || codePoint == 0xff9e || codePoint == 0xff9f
+                || codePoint == 0x111c2 || codePoint == 0x111c3 || codePoint == 0x1193f || codePoint == 0x11941
+                || codePoint == 0x11a3a || (codePoint >= 0x11a84 && codePoint <= 0x11a89) || codePoint == 0x11d46
+                || (codePoint >= 0x1f1e6 && codePoint <= 0x1f1ff)   // regional indicators
+                || (codePoint >= 0x1f3fb && codePoint <= 0x1f3ff);  // emoji modifiers
+    }
+}
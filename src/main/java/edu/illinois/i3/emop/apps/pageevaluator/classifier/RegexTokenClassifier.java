@@ -0,0 +1,84 @@
+package edu.illinois.i3.emop.apps.pageevaluator.classifier;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The original, regular expression based, token classifier.
+ * Kept as the reference implementation of the classification rules.
+ */
+public class RegexTokenClassifier implements TokenClassifier {
+
+    private static final Pattern NonAlphaPattern = Pattern.compile("\\P{L}", Pattern.CANON_EQ);
+    private static final Pattern PunctPattern = Pattern.compile("^\\p{Punct}$");
+    // the language of ^\p{Sc}?[\.,/\-]?(\p{N}+[\.,/%\-]?)+\p{Sc}?$, without its nested quantifier (which backtracks
+    // polynomially over long runs of digits), matched with possessive quantifiers in linear time
+    private static final Pattern NumberBasedObjectPattern =
+            Pattern.compile("^\\p{Sc}?+[\\.,/\\-]?+\\p{N}++(?:[\\.,/%\\-]\\p{N}++)*+[\\.,/%\\-]?+\\p{Sc}?+$");
+    private static final Pattern OneAlphaPattern = Pattern.compile("^\\p{L}$", Pattern.CANON_EQ);
+    private static final Pattern Repeated4orMoreCharsPattern = Pattern.compile("(\\P{N})\\1{3,}", Pattern.CANON_EQ);
+    private static final Pattern LeadingPunctPattern = Pattern.compile("^\\p{Punct}{0," + MAX_LEADING_PUNCT_TO_REMOVE + "}");
+    private static final Pattern TrailingPunctPattern = Pattern.compile("\\p{Punct}{0," + MAX_TRAILING_PUNCT_TO_REMOVE + "}$");
+
+    @Override
+    public TokenCategory classify(CharSequence token) {
+        String tokenText = token.toString();
+        String normTokenText = tokenText.toLowerCase();
+        String cleanTokenText = cleanToken(normTokenText);
+
+        // tokenText      = the default, not-normalized, token (trimmed)
+        // normTokenText  = the normalized (lowercased) tokenText
+        // cleanTokenText = the normTokenText with MAX_LEADING_PUNCT_REMOVE punctuation removed, and MAX_TRAILING_PUNCT_REMOVE punctuation removed
+
+        int cleanTokenLength = cleanTokenText.length();
+
+        Matcher punctMatcher = PunctPattern.matcher(tokenText);
+        if (punctMatcher.matches())
+            return TokenCategory.PUNCT;
+
+        Matcher numberMatcher = NumberBasedObjectPattern.matcher(tokenText);
+        if (numberMatcher.matches())
+            return TokenCategory.NUMBER_OBJECT;
+
+        Matcher singleAlphaMatcher = OneAlphaPattern.matcher(tokenText);
+        if (singleAlphaMatcher.matches())
+            return TokenCategory.SINGLE_LETTER;
+
+        Matcher ge4RepeatedCharsMatcher = Repeated4orMoreCharsPattern.matcher(normTokenText);
+        if (ge4RepeatedCharsMatcher.find())
+            return TokenCategory.REPEATED_CHARS;
+
+        // compute the number of non-alpha characters in the cleaned token (if it contains no more than 3 repeated characters in a run)
+        Matcher nonAlphaMatcher = NonAlphaPattern.matcher(cleanTokenText);
+        int nonAlphaCount = 0;
+        while (nonAlphaMatcher.find())
+            nonAlphaCount++;
+
+        if (nonAlphaCount == cleanTokenLength)
+            return TokenCategory.NON_ALPHA;
+
+        // a token can be cleaned only if, after cleaning, the remaining substring has a length >= 3
+        if (cleanTokenLength < CLEAN_TOKEN_LEN_THRESHOLD)
+            return TokenCategory.CLEAN_SHORT_WORD;
+
+        switch (nonAlphaCount) {
+            case 0:
+                return TokenCategory.CLEAN_ALL_ALPHA;
+
+            case 1:
+                return TokenCategory.CLEAN_ONE_NON_ALPHA;
+
+            case 2:
+                return TokenCategory.CLEAN_TWO_NON_ALPHA;
+
+            default:
+                return TokenCategory.CLEAN_THREE_OR_MORE_NON_ALPHA;
+        }
+    }
+
+    protected String cleanToken(String token) {
+        String cleanToken = TrailingPunctPattern.matcher(LeadingPunctPattern.matcher(token).replaceFirst("")).replaceFirst("");
+
+        return cleanToken;
+    }
+}
@@ -0,0 +1,17 @@
+package edu.illinois.i3.emop.apps.pageevaluator.classifier;
+
+/**
+ * The (mutually exclusive) categories a token is assigned to when computing the page statistics
+ */
+public enum TokenCategory {
+    PUNCT,                      // exactly 1 punctuation character
+    NUMBER_OBJECT,              // number based objects (numbers, dates, amounts of money, identifiers..etc.)
+    SINGLE_LETTER,              // exactly 1 alpha character
+    REPEATED_CHARS,             // 4 or more repeated characters (not numbers) in a run
+    NON_ALPHA,                  // after cleaning, made up exclusively of non-alpha characters
+    CLEAN_SHORT_WORD,           // after cleaning, length < CLEAN_TOKEN_LEN_THRESHOLD
+    CLEAN_ALL_ALPHA,            // after cleaning, exclusively alpha characters
+    CLEAN_ONE_NON_ALPHA,        // after cleaning, exactly 1 non-alpha character
+    CLEAN_TWO_NON_ALPHA,        // after cleaning, exactly 2 non-alpha characters
+    CLEAN_THREE_OR_MORE_NON_ALPHA // after cleaning, more than 2 non-alpha characters
+}
@@ -0,0 +1,24 @@
+package edu.illinois.i3.emop.apps.pageevaluator.classifier;
+
+/**
+ * Assigns tokens to the categories counted in the page statistics.
+ * Implementations must be thread safe.
+ */
+public interface TokenClassifier {
+
+    int MAX_LEADING_PUNCT_TO_REMOVE = 1;
+    int MAX_TRAILING_PUNCT_TO_REMOVE = 3;
+    int CLEAN_TOKEN_LEN_THRESHOLD = 3;
+
+    // to be incremented whenever the classification rules (and hence the page statistics) change
+    int RULES_VERSION = 1;
+
+    /**
+     * Classifies a token
+     *
+     * @param token The (trimmed, non-empty) token text; only valid for the duration of the call
+     * @return The token category
+     */
+    TokenCategory classify(CharSequence token);
+
+}
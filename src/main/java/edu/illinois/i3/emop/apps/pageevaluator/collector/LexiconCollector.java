@@ -0,0 +1,109 @@
+package edu.illinois.i3.emop.apps.pageevaluator.collector;
+
+import edu.illinois.i3.emop.apps.pageevaluator.OCRToken;
+import edu.illinois.i3.emop.apps.pageevaluator.classifier.TokenCategory;
+import edu.illinois.i3.emop.apps.pageevaluator.lexicon.Lexicon;
+
+/**
+ * Looks up the word tokens in a {@link Lexicon}: counts the word tokens (tokens made of letters, once stripped
+ * of their leading and trailing non-letters), those in the lexicon, and those one edit away from a word of the
+ * lexicon (likely correctable OCR errors, such as "tbe").
+ */
+public class LexiconCollector implements StatisticsCollector {
+
+    private static final String[] NAMES = { "lexiconWordCount", "inLexiconCount", "nearLexiconCount" };
+
+    private final Lexicon _lexicon;
+    private final TrimmedWord _word = new TrimmedWord();
+    private int _wordCount;
+    private int _inLexiconCount;
+    private int _nearLexiconCount;
+
+    public LexiconCollector(Lexicon lexicon) {
+        _lexicon = lexicon;
+    }
+
+    @Override
+    public void collect(OCRToken token, CharSequence text, TokenCategory category) {
+        if (!_word.reset(text))
+            return;
+
+        _wordCount++;
+        if (_lexicon.contains(_word))
+            _inLexiconCount++;
+        else if (_lexicon.isNear(_word))
+            _nearLexiconCount++;
+    }
+
+    @Override
+    public void merge(StatisticsCollector other) {
+        LexiconCollector collector = (LexiconCollector) other;
+        _wordCount += collector._wordCount;
+        _inLexiconCount += collector._inLexiconCount;
+        _nearLexiconCount += collector._nearLexiconCount;
+    }
+
+    @Override
+    public StatisticsCollector newCollector() {
+        return new LexiconCollector(_lexicon);
+    }
+
+    @Override
+    public String[] getNames() {
+        return NAMES;
+    }
+
+    @Override
+    public double[] getValues() {
+        return new double[] { _wordCount, _inLexiconCount, _nearLexiconCount };
+    }
+
+    // a view of a token without its leading and trailing non-letters
+    private static class TrimmedWord implements CharSequence {
+        private CharSequence _text;
+        private int _start;
+        private int _end;
+
+        // returns false if the token is not a word
+        private boolean reset(CharSequence text) {
+            int start = 0;
+            int end = text.length();
+            while (start < end && !Character.isLetter(text.charAt(start)))
+                start++;
+            while (end > start && !Character.isLetter(text.charAt(end - 1)))
+                end--;
+
+            if (end == start || end - start > Lexicon.MAX_WORD_LENGTH)
+                return false;
+            for (int i = start; i < end; i++)
+                if (!Character.isLetter(text.charAt(i)))
+                    return false;
+
+            _text = text;
+            _start = start;
+            _end = end;
+
+            return true;
+        }
+
+        @Override
+        public int length() {
+            return _end - _start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return _text.charAt(_start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return _text.subSequence(_start + start, _start + end);
+        }
+
+        @Override
+        public String toString() {
+            return _text.subSequence(_start, _end).toString();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package edu.illinois.i3.emop.apps.pageevaluator.collector;
+
+import edu.illinois.i3.emop.apps.pageevaluator.OCRToken;
+import edu.illinois.i3.emop.apps.pageevaluator.classifier.TokenCategory;
+
+/**
+ * The rates of tokens containing a long s (U+017F) and of tokens containing a Latin typographic ligature
+ * (U+FB00 to U+FB06, e.g. the ct and long s-t ligatures), which are typical of early modern printing
+ * and of OCR engines trained on it.
+ */
+public class LongSLigatureCollector implements StatisticsCollector {
+
+    private static final String[] NAMES = { "longSRate", "ligatureRate" };
+
+    private int _tokenCount;
+    private int _longSCount;
+    private int _ligatureCount;
+
+    @Override
+    public void collect(OCRToken token, CharSequence text, TokenCategory category) {
+        boolean hasLongS = false;
+        boolean hasLigature = false;
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\u017f')
+                hasLongS = true;
+            else if (c >= '\ufb00' && c <= '\ufb06')
+                hasLigature = true;
+        }
+
+        _tokenCount++;
+        if (hasLongS)
+            _longSCount++;
+        if (hasLigature)
+            _ligatureCount++;
+    }
+
+    @Override
+    public void merge(StatisticsCollector other) {
+        LongSLigatureCollector collector = (LongSLigatureCollector) other;
+        _tokenCount += collector._tokenCount;
+        _longSCount += collector._longSCount;
+        _ligatureCount += collector._ligatureCount;
+    }
+
+    @Override
+    public StatisticsCollector newCollector() {
+        return new LongSLigatureCollector();
+    }
+
+    @Override
+    public String[] getNames() {
+        return NAMES;
+    }
+
+    @Override
+    public double[] getValues() {
+        if (_tokenCount == 0)
+            return new double[] { Double.NaN, Double.NaN };
+
+        return new double[] { (double) _longSCount / _tokenCount, (double) _ligatureCount / _tokenCount };
+    }
+}
@@ -0,0 +1,45 @@
+package edu.illinois.i3.emop.apps.pageevaluator.collector;
+
+import edu.illinois.i3.emop.apps.pageevaluator.OCRToken;
+import edu.illinois.i3.emop.apps.pageevaluator.classifier.TokenCategory;
+
+/**
+ * Computes page statistics from the tokens of a page. All the collectors of a page are fed each token once,
+ * during the single traversal of the page that classifies its tokens, so adding statistics does not add passes
+ * over the page. The counts of the token categories ({@link edu.illinois.i3.emop.apps.pageevaluator.OCRPageStats})
+ * are the built-in collector.
+ *
+ * A collector accumulates the statistics of a single page (or part of a page), and is not thread safe.
+ */
+public interface StatisticsCollector {
+
+    /**
+     * Collects the statistics of a token
+     *
+     * @param token The OCR token (for hyphenated words joined across lines, the first part of the word)
+     * @param text The (trimmed, non-empty) token text, as classified; only valid for the duration of the call
+     * @param category The token category
+     */
+    void collect(OCRToken token, CharSequence text, TokenCategory category);
+
+    /**
+     * Adds the statistics collected by another collector of the same type (e.g. over the following part of the page)
+     */
+    void merge(StatisticsCollector other);
+
+    /**
+     * @return A new, empty collector of the same statistics
+     */
+    StatisticsCollector newCollector();
+
+    /**
+     * @return The names of the statistics, which must not change
+     */
+    String[] getNames();
+
+    /**
+     * @return The values of the statistics, in the order of their names (NaN if undefined)
+     */
+    double[] getValues();
+
+}
@@ -0,0 +1,100 @@
+package edu.illinois.i3.emop.apps.pageevaluator.collector;
+
+import edu.illinois.i3.emop.apps.pageevaluator.OCRToken;
+import edu.illinois.i3.emop.apps.pageevaluator.classifier.TokenCategory;
+import edu.illinois.i3.emop.apps.pageevaluator.hocr.HOCRToken;
+import edu.illinois.i3.emop.apps.pageevaluator.txt.TxtToken;
+
+import java.util.Arrays;
+
+/**
+ * Records the category of every token of a page, in page order, so that the classification decisions can be
+ * exported (see {@link edu.illinois.i3.emop.apps.pageevaluator.batch.TokenLabelWriter}) rather than re-derived
+ * downstream. hOCR tokens are labeled with their word id (if any), and text tokens with their offset in the page
+ * text (see {@link TxtToken#getOffset}); the other tokens are identified by their index in the sequence of the
+ * tokens of the page. An end of line hyphenated word is a single token, labeled with the id of its first part.
+ *
+ * The labels are not statistics: the collector has no values, and adds no result columns.
+ */
+public class TokenLabelCollector implements StatisticsCollector {
+
+    private static final String[] NAMES = new String[0];
+    private static final double[] VALUES = new double[0];
+
+    private String[] _tokenIds = new String[64];
+    private int[] _tokenOffsets = new int[64];
+    private byte[] _categoryCodes = new byte[64];
+    private int _tokenCount;
+
+    @Override
+    public void collect(OCRToken token, CharSequence text, TokenCategory category) {
+        add(token instanceof HOCRToken ? ((HOCRToken) token).getTokenId() : null,
+                token instanceof TxtToken ? ((TxtToken) token).getOffset() : -1, (byte) category.ordinal());
+    }
+
+    /**
+     * Appends the labels of the part of the page that follows the part of this collector
+     */
+    @Override
+    public void merge(StatisticsCollector other) {
+        TokenLabelCollector collector = (TokenLabelCollector) other;
+        for (int i = 0; i < collector._tokenCount; i++)
+            add(collector._tokenIds[i], collector._tokenOffsets[i], collector._categoryCodes[i]);
+    }
+
+    @Override
+    public StatisticsCollector newCollector() {
+        return new TokenLabelCollector();
+    }
+
+    @Override
+    public String[] getNames() {
+        return NAMES;
+    }
+
+    @Override
+    public double[] getValues() {
+        return VALUES;
+    }
+
+    public int getTokenCount() {
+        return _tokenCount;
+    }
+
+    /**
+     * @param index The index of the token on the page
+     * @return The hOCR word id of the token, or null if it has none
+     */
+    public String getTokenId(int index) {
+        return _tokenIds[index];
+    }
+
+    /**
+     * @param index The index of the token on the page
+     * @return The offset of the text token in the page text, or -1 if it is not a text token
+     */
+    public int getTokenOffset(int index) {
+        return _tokenOffsets[index];
+    }
+
+    /**
+     * @param index The index of the token on the page
+     * @return The category of the token, as the ordinal of its {@link TokenCategory}
+     */
+    public byte getCategoryCode(int index) {
+        return _categoryCodes[index];
+    }
+
+    private void add(String tokenId, int tokenOffset, byte categoryCode) {
+        if (_tokenCount == _categoryCodes.length) {
+            _tokenIds = Arrays.copyOf(_tokenIds, _tokenCount * 2);
+            _tokenOffsets = Arrays.copyOf(_tokenOffsets, _tokenCount * 2);
+            _categoryCodes = Arrays.copyOf(_categoryCodes, _tokenCount * 2);
+        }
+
+        _tokenIds[_tokenCount] = tokenId;
+        _tokenOffsets[_tokenCount] = tokenOffset;
+        _categoryCodes[_tokenCount] = categoryCode;
+        _tokenCount++;
+    }
+}
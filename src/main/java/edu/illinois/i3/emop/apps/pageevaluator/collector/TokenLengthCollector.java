@@ -0,0 +1,54 @@
+package edu.illinois.i3.emop.apps.pageevaluator.collector;
+
+import edu.illinois.i3.emop.apps.pageevaluator.OCRToken;
+import edu.illinois.i3.emop.apps.pageevaluator.classifier.TokenCategory;
+
+/**
+ * The histogram of the token lengths (in code points): the number of tokens of each length from 1 to 9,
+ * and of tokens of 10 code points or more.
+ */
+public class TokenLengthCollector implements StatisticsCollector {
+
+    private static final int BIN_COUNT = 10;
+    private static final String[] NAMES = new String[BIN_COUNT];
+
+    static {
+        for (int i = 0; i < BIN_COUNT - 1; i++)
+            NAMES[i] = "tokenLength" + (i + 1);
+        NAMES[BIN_COUNT - 1] = "tokenLength" + BIN_COUNT + "Plus";
+    }
+
+    private final int[] _counts = new int[BIN_COUNT];
+
+    @Override
+    public void collect(OCRToken token, CharSequence text, TokenCategory category) {
+        int length = Character.codePointCount(text, 0, text.length());
+        _counts[Math.min(length, BIN_COUNT) - 1]++;
+    }
+
+    @Override
+    public void merge(StatisticsCollector other) {
+        int[] counts = ((TokenLengthCollector) other)._counts;
+        for (int i = 0; i < BIN_COUNT; i++)
+            _counts[i] += counts[i];
+    }
+
+    @Override
+    public StatisticsCollector newCollector() {
+        return new TokenLengthCollector();
+    }
+
+    @Override
+    public String[] getNames() {
+        return NAMES;
+    }
+
+    @Override
+    public double[] getValues() {
+        double[] values = new double[BIN_COUNT];
+        for (int i = 0; i < BIN_COUNT; i++)
+            values[i] = _counts[i];
+
+        return values;
+    }
+}
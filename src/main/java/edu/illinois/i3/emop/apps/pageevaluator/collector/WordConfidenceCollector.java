@@ -0,0 +1,58 @@
+package edu.illinois.i3.emop.apps.pageevaluator.collector;
+
+import edu.illinois.i3.emop.apps.pageevaluator.OCRToken;
+import edu.illinois.i3.emop.apps.pageevaluator.classifier.TokenCategory;
+import edu.illinois.i3.emop.apps.pageevaluator.hocr.HOCRToken;
+
+/**
+ * The mean and minimum OCR engine word confidence (the x_wconf property of hOCR words).
+ * Tokens without a confidence (including all the tokens of other formats) are ignored.
+ */
+public class WordConfidenceCollector implements StatisticsCollector {
+
+    private static final String[] NAMES = { "wordConfidenceMean", "wordConfidenceMin" };
+
+    private int _count;
+    private double _sum;
+    private double _min = Double.POSITIVE_INFINITY;
+
+    @Override
+    public void collect(OCRToken token, CharSequence text, TokenCategory category) {
+        if (!(token instanceof HOCRToken))
+            return;
+
+        double confidence = ((HOCRToken) token).getWordConfidence();
+        if (!Double.isNaN(confidence))
+            add(1, confidence, confidence);
+    }
+
+    @Override
+    public void merge(StatisticsCollector other) {
+        WordConfidenceCollector collector = (WordConfidenceCollector) other;
+        add(collector._count, collector._sum, collector._min);
+    }
+
+    private void add(int count, double sum, double min) {
+        _count += count;
+        _sum += sum;
+        _min = Math.min(_min, min);
+    }
+
+    @Override
+    public StatisticsCollector newCollector() {
+        return new WordConfidenceCollector();
+    }
+
+    @Override
+    public String[] getNames() {
+        return NAMES;
+    }
+
+    @Override
+    public double[] getValues() {
+        if (_count == 0)
+            return new double[] { Double.NaN, Double.NaN };
+
+        return new double[] { _sum / _count, _min };
+    }
+}
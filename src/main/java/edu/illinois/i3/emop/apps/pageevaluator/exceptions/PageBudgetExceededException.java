@@ -0,0 +1,15 @@
+package edu.illinois.i3.emop.apps.pageevaluator.exceptions;
+
+/**
+ * Thrown when scoring a page takes longer than its time budget, so that the page is reported as failed
+ * instead of holding a worker
+ */
+public class PageBudgetExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public PageBudgetExceededException(String message) {
+        super(message);
+    }
+
+}
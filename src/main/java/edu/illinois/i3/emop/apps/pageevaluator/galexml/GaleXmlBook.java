@@ -0,0 +1,144 @@
+package edu.illinois.i3.emop.apps.pageevaluator.galexml;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.AbstractIterator;
+import edu.illinois.i3.emop.apps.pageevaluator.XMLStreamReaders;
+import edu.illinois.i3.emop.apps.pageevaluator.exceptions.PageParserException;
+import edu.illinois.i3.emop.apps.pageevaluator.metrics.ScoringMetrics;
+import edu.illinois.i3.emop.apps.pageevaluator.metrics.Stage;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Reader;
+
+/**
+ * Iterates over the pages of a Gale (ECCO/EEBO) XML book in a single forward pass over its XML events,
+ * without ever building a DOM of the book:
+ *
+ * <pre>
+ *   &lt;book&gt;
+ *     &lt;bookInfo&gt;&lt;documentID&gt;...&lt;/documentID&gt;...&lt;/bookInfo&gt;
+ *     &lt;text&gt;
+ *       &lt;page&gt;
+ *         &lt;pageInfo&gt;&lt;recordID&gt;...&lt;/recordID&gt;&lt;sourcePage&gt;...&lt;/sourcePage&gt;...&lt;/pageInfo&gt;
+ *         &lt;pageContent&gt;&lt;p&gt;&lt;wd pos="left,top,right,bottom"&gt;word&lt;/wd&gt;...&lt;/p&gt;...&lt;/pageContent&gt;
+ *       &lt;/page&gt;
+ *       ...
+ * </pre>
+ *
+ * The words of each page must be read before moving on to the next page (unread words are skipped when the next
+ * page is requested).
+ */
+public class GaleXmlBook extends AbstractIterator<GaleXmlPage> {
+    static final String PAGE = "page";
+
+    private final XMLStreamReader _xmlReader;
+    private final String _documentId;
+
+    // true when the stream reader is positioned on the start of a page element that has not been returned yet
+    private boolean _atPageStart;
+    private GaleXmlPage _currentPage;
+
+    private GaleXmlBook(XMLStreamReader xmlReader, String documentId, boolean atPageStart) {
+        _xmlReader = xmlReader;
+        _documentId = documentId;
+        _atPageStart = atPageStart;
+    }
+
+    /**
+     * Reads the book metadata, up to the start of the first page
+     *
+     * @param bookReader The book reader, which must not be closed before all pages have been read
+     * @return The book
+     * @throws PageParserException If the book is not well-formed
+     */
+    public static GaleXmlBook open(Reader bookReader) throws PageParserException {
+        long start = System.nanoTime();
+        try {
+            XMLStreamReader xmlReader = XMLStreamReaders.create(bookReader);
+            String documentId = null;
+            boolean atPageStart = false;
+
+            while (!atPageStart && xmlReader.hasNext()) {
+                if (xmlReader.next() != XMLStreamConstants.START_ELEMENT)
+                    continue;
+
+                String name = xmlReader.getLocalName();
+                if (name.equals(PAGE))
+                    atPageStart = true;
+                else if (documentId == null && name.equals("documentID"))
+                    documentId = xmlReader.getElementText().trim();
+            }
+
+            if (!atPageStart)
+                xmlReader.close();
+
+            ScoringMetrics.getInstance().recordStage(Stage.PARSE, System.nanoTime() - start);
+
+            return new GaleXmlBook(xmlReader, Strings.nullToEmpty(documentId), atPageStart);
+        }
+        catch (XMLStreamException e) {
+            throw new PageParserException(e);
+        }
+    }
+
+    public String getDocumentId() {
+        return _documentId;
+    }
+
+    @Override
+    protected GaleXmlPage computeNext() {
+        if (_currentPage != null) {
+            _currentPage.skipRemainingTokens();
+            _currentPage = null;
+        }
+
+        try {
+            if (!_atPageStart && !advanceToNextPage())
+                return endOfData();
+
+            _atPageStart = false;
+            _currentPage = readPageInfo();
+        }
+        catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+
+        return _currentPage;
+    }
+
+    private boolean advanceToNextPage() throws XMLStreamException {
+        while (_xmlReader.hasNext())
+            if (_xmlReader.next() == XMLStreamConstants.START_ELEMENT && _xmlReader.getLocalName().equals(PAGE))
+                return true;
+
+        _xmlReader.close();
+
+        return false;
+    }
+
+    // reads the page metadata, up to the start of the page content (or the end of the page, if it has no content)
+    private GaleXmlPage readPageInfo() throws XMLStreamException {
+        String recordId = "";
+        String sourcePage = "";
+
+        while (_xmlReader.hasNext()) {
+            int event = _xmlReader.next();
+
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = _xmlReader.getLocalName();
+                if (name.equals(GaleXmlTokenIterator.PAGE_CONTENT))
+                    return new GaleXmlPage(recordId, sourcePage, _xmlReader);
+                else if (name.equals("recordID"))
+                    recordId = _xmlReader.getElementText().trim();
+                else if (name.equals("sourcePage"))
+                    sourcePage = _xmlReader.getElementText().trim();
+            }
+            else if (event == XMLStreamConstants.END_ELEMENT && _xmlReader.getLocalName().equals(PAGE))
+                break;
+        }
+
+        return new GaleXmlPage(recordId, sourcePage, null);
+    }
+}
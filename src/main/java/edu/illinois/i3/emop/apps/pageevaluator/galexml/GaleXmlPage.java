@@ -0,0 +1,71 @@
+package edu.illinois.i3.emop.apps.pageevaluator.galexml;
+
+import com.google.common.collect.Iterators;
+import edu.illinois.i3.emop.apps.pageevaluator.OCRPage;
+import edu.illinois.i3.emop.apps.pageevaluator.OCRToken;
+import edu.illinois.i3.emop.apps.pageevaluator.classifier.TokenClassifier;
+
+import javax.xml.stream.XMLStreamReader;
+import java.util.Collections;
+import java.util.Iterator;
+
+/**
+ * A page of a Gale (ECCO/EEBO) XML book, read by {@link GaleXmlBook}. The words are streamed from the book by the
+ * token iterator, which can only be obtained once.
+ */
+public class GaleXmlPage extends OCRPage<GaleXmlPageStats> {
+
+    // Page metadata
+    private final String _pageId;
+    private final String _sourcePage;
+    // null if the page has no content
+    private final XMLStreamReader _xmlReader;
+    private Iterator<GaleXmlToken> _tokenIterator;
+
+    GaleXmlPage(String pageId, String sourcePage, XMLStreamReader xmlReader) {
+        _pageId = pageId;
+        _sourcePage = sourcePage;
+        _xmlReader = xmlReader;
+    }
+
+    /**
+     * @return The page record id
+     */
+    public String getPageId() {
+        return _pageId;
+    }
+
+    /**
+     * @return The page number in the source book
+     */
+    public String getSourcePage() {
+        return _sourcePage;
+    }
+
+    @Override
+    public Iterator<GaleXmlToken> getTokenIterator() {
+        if (_tokenIterator != null)
+            throw new IllegalStateException("The tokens of a streamed page can only be iterated once");
+
+        _tokenIterator = _xmlReader != null ?
+                new GaleXmlTokenIterator(_xmlReader) : Collections.<GaleXmlToken>emptyIterator();
+
+        return _tokenIterator;
+    }
+
+    @Override
+    protected GaleXmlPageStats calculateStatistics(Iterator<? extends OCRToken> tokenIterator, TokenClassifier tokenClassifier) {
+        GaleXmlPageStats pageStats = super.calculateStatistics(tokenIterator, tokenClassifier);
+        pageStats.setPageId(_pageId);
+        pageStats.setSourcePage(_sourcePage);
+
+        return pageStats;
+    }
+
+    /**
+     * Reads the rest of the page content
+     */
+    void skipRemainingTokens() {
+        Iterators.size(_tokenIterator != null ? _tokenIterator : getTokenIterator());
+    }
+}
@@ -0,0 +1,17 @@
+package edu.illinois.i3.emop.apps.pageevaluator.galexml;
+
+import edu.illinois.i3.emop.apps.pageevaluator.OCRPageStats;
+
+public class GaleXmlPageStats extends OCRPageStats {
+
+    // Page metadata
+    private String _sourcePage = "";
+
+    public String getSourcePage() {
+        return _sourcePage;
+    }
+
+    public void setSourcePage(String sourcePage) {
+        _sourcePage = sourcePage;
+    }
+}
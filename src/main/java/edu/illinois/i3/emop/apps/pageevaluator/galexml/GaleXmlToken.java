@@ -0,0 +1,41 @@
+package edu.illinois.i3.emop.apps.pageevaluator.galexml;
+
+import edu.illinois.i3.emop.apps.pageevaluator.OCRToken;
+
+/**
+ * A word (wd element) of a Gale XML page
+ */
+public class GaleXmlToken implements OCRToken {
+
+    private final CharSequence _text;
+    private final String _pos;
+    private final boolean _isLastTokenOnLine;
+
+    public GaleXmlToken(CharSequence text, String pos, boolean isLastTokenOnLine) {
+        _text = text;
+        _pos = pos;
+        _isLastTokenOnLine = isLastTokenOnLine;
+    }
+
+    @Override
+    public String getText() {
+        return _text.toString();
+    }
+
+    @Override
+    public CharSequence getTextView() {
+        return _text;
+    }
+
+    /**
+     * @return The word bounding box, as "left,top,right,bottom" (or the empty string if unknown)
+     */
+    public String getPos() {
+        return _pos;
+    }
+
+    @Override
+    public boolean isLastTokenOnLine() {
+        return _isLastTokenOnLine;
+    }
+}
@@ -0,0 +1,138 @@
+package edu.illinois.i3.emop.apps.pageevaluator.galexml;
+
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.collect.AbstractIterator;
+import edu.illinois.i3.emop.apps.pageevaluator.TextSpan;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.util.Iterator;
+
+/**
+ * Iterates over the wd elements of a Gale XML page, by pulling XML events from a stream reader positioned
+ * on the start of the pageContent element, and stops at its end.
+ *
+ * Gale XML does not mark up lines, so line ends are inferred from the word positions: a word is the last on its line
+ * if the next word of the same paragraph starts to the left of it or below it, or if it is the last word of
+ * its paragraph. As for hOCR, a word is only emitted once the next word (or the end of its paragraph) has been seen.
+ * The word texts are views of a per-page text buffer.
+ */
+public class GaleXmlTokenIterator extends AbstractIterator<GaleXmlToken> {
+    static final String PAGE_CONTENT = "pageContent";
+    static final String PARAGRAPH = "p";
+    static final String WORD = "wd";
+
+    private static final Splitter POS_SPLITTER = Splitter.on(',').trimResults();
+
+    private final XMLStreamReader _xmlReader;
+    // tokens of the page refer to the page text
+    private final StringBuilder _pageText = new StringBuilder();
+
+    // depth of the current element relative to the pageContent element
+    private int _depth;
+    private int _wordDepth = -1;
+    private String _wordPos;
+    private int _wordStart;
+
+    // the last word read, not emitted yet
+    private TextSpan _pendingText;
+    private String _pendingPos;
+    private int[] _pendingBox;
+
+    public GaleXmlTokenIterator(XMLStreamReader xmlReader) {
+        _xmlReader = xmlReader;
+    }
+
+    @Override
+    protected GaleXmlToken computeNext() {
+        try {
+            while (_depth >= 0 && _xmlReader.hasNext()) {
+                switch (_xmlReader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        _depth++;
+                        if (_wordDepth < 0 && WORD.equals(_xmlReader.getLocalName())) {
+                            _wordDepth = _depth;
+                            _wordPos = Strings.nullToEmpty(_xmlReader.getAttributeValue(null, "pos"));
+                            _wordStart = _pageText.length();
+                        }
+                        break;
+
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        if (_wordDepth >= 0)
+                            _pageText.append(_xmlReader.getTextCharacters(), _xmlReader.getTextStart(), _xmlReader.getTextLength());
+                        break;
+
+                    case XMLStreamConstants.END_ELEMENT:
+                        GaleXmlToken token = null;
+
+                        if (_depth == _wordDepth) {
+                            _wordDepth = -1;
+                            int[] box = parseBox(_wordPos);
+                            if (_pendingText != null)
+                                token = new GaleXmlToken(_pendingText, _pendingPos, isLineBreak(_pendingBox, box));
+                            _pendingText = new TextSpan(_pageText, _wordStart, _pageText.length());
+                            _pendingPos = _wordPos;
+                            _pendingBox = box;
+                        }
+                        else if (_depth == 0 || (_wordDepth < 0 && PARAGRAPH.equals(_xmlReader.getLocalName())))
+                            token = flushPending();
+
+                        _depth--;
+
+                        if (token != null)
+                            return token;
+                        break;
+                }
+            }
+        }
+        catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+
+        GaleXmlToken token = flushPending();
+
+        return token != null ? token : endOfData();
+    }
+
+    // emits the pending word as the last on its line
+    private GaleXmlToken flushPending() {
+        if (_pendingText == null)
+            return null;
+
+        GaleXmlToken token = new GaleXmlToken(_pendingText, _pendingPos, true);
+        _pendingText = null;
+        _pendingPos = null;
+        _pendingBox = null;
+
+        return token;
+    }
+
+    // true if the next word starts to the left of, or below, the previous word
+    private static boolean isLineBreak(int[] box, int[] nextBox) {
+        if (box == null || nextBox == null)
+            return false;
+
+        return nextBox[0] < box[0] || nextBox[1] > box[3];
+    }
+
+    // returns {left, top, right, bottom}, or null if the position is missing or malformed
+    private static int[] parseBox(String pos) {
+        int[] box = new int[4];
+        int i = 0;
+
+        try {
+            Iterator<String> values = POS_SPLITTER.split(pos).iterator();
+            while (i < 4 && values.hasNext())
+                box[i++] = Integer.parseInt(values.next());
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+
+        return i == 4 ? box : null;
+    }
+}
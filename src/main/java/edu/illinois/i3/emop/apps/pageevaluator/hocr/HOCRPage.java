@@ -2,14 +2,20 @@ package edu.illinois.i3.emop.apps.pageevaluator.hocr;
 
 import com.google.common.collect.Sets;
 import edu.illinois.i3.emop.apps.pageevaluator.OCRPage;
+import edu.illinois.i3.emop.apps.pageevaluator.OCRToken;
+import edu.illinois.i3.emop.apps.pageevaluator.classifier.TokenClassifier;
 import edu.illinois.i3.emop.apps.pageevaluator.exceptions.PageParserException;
+import edu.illinois.i3.emop.apps.pageevaluator.metrics.ScoringMetrics;
+import edu.illinois.i3.emop.apps.pageevaluator.metrics.Stage;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 import org.xml.sax.InputSource;
+import org.xml.sax.helpers.DefaultHandler;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathFactory;
@@ -21,6 +27,32 @@ import java.util.Set;
 
 public class HOCRPage extends OCRPage<HOCRPageStats> {
 
+    // factory lookups are expensive and contended; parsers are not thread safe, so keep one per thread
+    private static final ThreadLocal<DocumentBuilder> DocumentBuilders = new ThreadLocal<DocumentBuilder>() {
+        @Override
+        protected DocumentBuilder initialValue() {
+            try {
+                DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+                documentBuilderFactory.setNamespaceAware(false);
+                documentBuilderFactory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+                DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
+                // report problems through the thrown exception only, instead of also printing them to stderr
+                documentBuilder.setErrorHandler(new DefaultHandler());
+                return documentBuilder;
+            }
+            catch (ParserConfigurationException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    };
+
+    static final ThreadLocal<XPath> XPaths = new ThreadLocal<XPath>() {
+        @Override
+        protected XPath initialValue() {
+            return XPathFactory.newInstance().newXPath();
+        }
+    };
+
     // Page metadata
     private final String _pageId;
     private final String _ocrEngine;
@@ -35,15 +67,13 @@ public class HOCRPage extends OCRPage<HOCRPageStats> {
     }
 
     public static HOCRPage parse(Reader pageReader) throws PageParserException {
+        long start = System.nanoTime();
         try {
-            DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
-            documentBuilderFactory.setNamespaceAware(false);
-            documentBuilderFactory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
-            DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
+            DocumentBuilder documentBuilder = DocumentBuilders.get();
             InputSource inputSource = new InputSource(pageReader);
             Document document = documentBuilder.parse(inputSource);
-            XPathFactory xpathFactory = XPathFactory.newInstance();
-            XPath xpath = xpathFactory.newXPath();
+            XPath xpath = XPaths.get();
+            xpath.reset();
 
             String ocrEngine = (String) xpath.evaluate("/html/head/meta[@name='ocr-system']/@content", document, XPathConstants.STRING);
             Set<String> ocrCapabilities = Sets.newHashSet();
@@ -51,8 +81,9 @@ public class HOCRPage extends OCRPage<HOCRPageStats> {
             ocrCapabilities.addAll(Arrays.asList(capabilities.split(" ")));
 
             NodeList pagesXml = (NodeList) xpath.evaluate("//*[@class='ocr_page']", document, XPathConstants.NODESET);
-            Element pageXml = (Element) pagesXml.item(0);  // we only consider the first page
+            Element pageXml = (Element) pagesXml.item(0);  // we only consider the first page (see HOCRVolume)
             String pageId = pageXml.getAttribute("id");
+            ScoringMetrics.getInstance().recordStage(Stage.PARSE, System.nanoTime() - start);
 
             return new HOCRPage(pageId, pageXml, ocrEngine, ocrCapabilities);
         }
@@ -77,4 +108,12 @@ public class HOCRPage extends OCRPage<HOCRPageStats> {
     public Iterator<HOCRToken> getTokenIterator() {
         return new HOCRTokenIterator(_pageXml);
     }
+
+    @Override
+    protected HOCRPageStats calculateStatistics(Iterator<? extends OCRToken> tokenIterator, TokenClassifier tokenClassifier) {
+        HOCRPageStats pageStats = super.calculateStatistics(tokenIterator, tokenClassifier);
+        pageStats.setPageMetadata(_pageId, _ocrEngine, _ocrCapabilities);
+
+        return pageStats;
+    }
 }
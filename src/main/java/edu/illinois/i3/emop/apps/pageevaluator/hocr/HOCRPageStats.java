@@ -3,6 +3,26 @@ package edu.illinois.i3.emop.apps.pageevaluator.hocr;
 
 import edu.illinois.i3.emop.apps.pageevaluator.OCRPageStats;
 
+import java.util.Collections;
+import java.util.Set;
+
 public class HOCRPageStats extends OCRPageStats {
 
+    // Page metadata
+    private String _ocrEngine = "";
+    private Set<String> _ocrCapabilities = Collections.emptySet();
+
+    public void setPageMetadata(String pageId, String ocrEngine, Set<String> ocrCapabilities) {
+        setPageId(pageId);
+        _ocrEngine = ocrEngine;
+        _ocrCapabilities = ocrCapabilities;
+    }
+
+    public String getOcrEngine() {
+        return _ocrEngine;
+    }
+
+    public Set<String> getOcrCapabilities() {
+        return _ocrCapabilities;
+    }
 }
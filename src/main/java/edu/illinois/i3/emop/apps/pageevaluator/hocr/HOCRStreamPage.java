@@ -0,0 +1,82 @@
+package edu.illinois.i3.emop.apps.pageevaluator.hocr;
+
+import com.google.common.collect.Iterators;
+import edu.illinois.i3.emop.apps.pageevaluator.OCRPage;
+import edu.illinois.i3.emop.apps.pageevaluator.OCRToken;
+import edu.illinois.i3.emop.apps.pageevaluator.classifier.TokenClassifier;
+import edu.illinois.i3.emop.apps.pageevaluator.exceptions.PageParserException;
+
+import javax.xml.stream.XMLStreamReader;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * An hOCR page read as a single forward stream of XML events, as an alternative to the DOM based {@link HOCRPage}.
+ * Parsing only reads the document up to the start of the (first) ocr_page element; the tokens are then read
+ * on demand by the token iterator, which never holds more than the current line in memory.
+ * As a consequence, the token iterator can only be obtained once, and the page reader must not be closed before
+ * the tokens have been consumed. The pages of a multi-page document are read by {@link HOCRVolume}.
+ */
+public class HOCRStreamPage extends OCRPage<HOCRPageStats> {
+
+    // Page metadata
+    private final String _pageId;
+    private final String _ocrEngine;
+    private final Set<String> _ocrCapabilities;
+    private final XMLStreamReader _xmlReader;
+    private HOCRStreamTokenIterator _tokenIterator;
+
+    HOCRStreamPage(String pageId, XMLStreamReader xmlReader, String ocrEngine, Set<String> ocrCapabilities) {
+        _pageId = pageId;
+        _xmlReader = xmlReader;
+        _ocrEngine = ocrEngine;
+        _ocrCapabilities = ocrCapabilities;
+    }
+
+    public static HOCRStreamPage parse(Reader pageReader) throws PageParserException {
+        HOCRVolume volume = HOCRVolume.open(pageReader);
+        if (!volume.hasNext())
+            throw new PageParserException("No ocr_page element found");
+
+        return volume.next();
+    }
+
+    public String getPageId() {
+        return _pageId;
+    }
+
+    public String getOcrEngine() {
+        return _ocrEngine;
+    }
+
+    public Set<String> getOcrCapabilities() {
+        return _ocrCapabilities;
+    }
+
+    @Override
+    public Iterator<HOCRToken> getTokenIterator() {
+        if (_tokenIterator != null)
+            throw new IllegalStateException("The tokens of a streamed page can only be iterated once");
+
+        _tokenIterator = new HOCRStreamTokenIterator(_xmlReader);
+
+        return _tokenIterator;
+    }
+
+    @Override
+    protected HOCRPageStats calculateStatistics(Iterator<? extends OCRToken> tokenIterator, TokenClassifier tokenClassifier) {
+        HOCRPageStats pageStats = super.calculateStatistics(tokenIterator, tokenClassifier);
+        pageStats.setPageMetadata(_pageId, _ocrEngine, _ocrCapabilities);
+
+        return pageStats;
+    }
+
+    /**
+     * Reads the rest of the page, leaving the stream reader positioned after the end of the ocr_page element
+     */
+    void skipRemainingTokens() {
+        Iterator<HOCRToken> tokenIterator = _tokenIterator != null ? _tokenIterator : getTokenIterator();
+        Iterators.size(tokenIterator);
+    }
+}
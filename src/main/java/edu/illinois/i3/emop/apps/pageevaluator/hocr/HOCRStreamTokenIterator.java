@@ -0,0 +1,110 @@
+package edu.illinois.i3.emop.apps.pageevaluator.hocr;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.AbstractIterator;
+import edu.illinois.i3.emop.apps.pageevaluator.TextSpan;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Iterates over the words of an ocr_page by pulling XML events from a stream reader positioned
+ * on the start of the ocr_page element. A word is only emitted once the next word (or the end of
+ * its line) has been seen, which is what allows flagging the last word on each line without
+ * buffering more than a single word. The word texts are views of a per-line text buffer.
+ */
+public class HOCRStreamTokenIterator extends AbstractIterator<HOCRToken> {
+    static final String OCR_PAGE = "ocr_page";
+    static final String OCR_LINE = "ocr_line";
+    static final String OCRX_WORD = "ocrx_word";
+
+    private final XMLStreamReader _xmlReader;
+    private StringBuilder _lineText;
+
+    // depth of the current element relative to the ocr_page element
+    private int _depth;
+    private int _lineDepth = -1;
+    private int _wordDepth = -1;
+    private String _wordId;
+    private String _wordTitle;
+    private int _wordStart;
+
+    // the last word read on the current line, not emitted yet
+    private String _pendingId;
+    private String _pendingTitle;
+    private TextSpan _pendingText;
+
+    public HOCRStreamTokenIterator(XMLStreamReader xmlReader) {
+        _xmlReader = xmlReader;
+    }
+
+    @Override
+    protected HOCRToken computeNext() {
+        try {
+            while (_depth >= 0 && _xmlReader.hasNext()) {
+                switch (_xmlReader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        _depth++;
+                        String cssClass = _xmlReader.getAttributeValue(null, "class");
+
+                        if (_lineDepth < 0) {
+                            if (OCR_LINE.equals(cssClass)) {
+                                _lineDepth = _depth;
+                                // tokens of previous lines may still refer to their line buffer
+                                _lineText = new StringBuilder();
+                            }
+                        }
+                        else if (_wordDepth < 0 && OCRX_WORD.equals(cssClass)) {
+                            _wordDepth = _depth;
+                            _wordId = _xmlReader.getAttributeValue(null, "id");
+                            _wordTitle = Strings.nullToEmpty(_xmlReader.getAttributeValue(null, "title"));
+                            _wordStart = _lineText.length();
+                        }
+                        break;
+
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        if (_wordDepth >= 0)
+                            _lineText.append(_xmlReader.getTextCharacters(), _xmlReader.getTextStart(), _xmlReader.getTextLength());
+                        break;
+
+                    case XMLStreamConstants.END_ELEMENT:
+                        HOCRToken token = null;
+
+                        if (_depth == _wordDepth) {
+                            _wordDepth = -1;
+                            if (_pendingText != null)
+                                token = new HOCRToken(_pendingId, _pendingTitle, _pendingText, false);
+                            _pendingId = _wordId;
+                            _pendingTitle = _wordTitle;
+                            _pendingText = new TextSpan(_lineText, _wordStart, _lineText.length());
+                        }
+                        else if (_depth == _lineDepth) {
+                            _lineDepth = -1;
+                            if (_pendingText != null)
+                                token = new HOCRToken(_pendingId, _pendingTitle, _pendingText, true);
+                            _pendingId = _pendingTitle = null;
+                            _pendingText = null;
+                        }
+
+                        _depth--;
+
+                        if (token != null)
+                            return token;
+                        break;
+                }
+            }
+
+            // the stream reader is left open at the end of the page, as the document may contain more pages
+            if (_depth >= 0)
+                _xmlReader.close();
+        }
+        catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+
+        return endOfData();
+    }
+}
@@ -6,51 +6,216 @@ import org.w3c.dom.Element;
 
 import java.util.Properties;
 
+/**
+ * An hOCR word. The properties of its title attribute (e.g. "bbox 10 20 30 40; x_wconf 93") are only parsed
+ * when they are requested, as scoring does not use them.
+ */
 public class HOCRToken implements OCRToken {
-    private final Element _tokenXml;
+    private static final int BBOX_UNPARSED = 0;
+    private static final int BBOX_PRESENT = 1;
+    private static final int BBOX_ABSENT = 2;
+
+    private final CharSequence _text;
     private final boolean _isLastTokenOnLine;
     private final String _tokenId;
-    private final Properties _tokenProperties;
+    private final String _title;
+
+    // parsed on demand
+    private Properties _tokenProperties;
+    private int _bboxState = BBOX_UNPARSED;
+    private int _left, _top, _right, _bottom;
 
     public HOCRToken(Element tokenXml, boolean isLastTokenOnLine) {
-        _tokenXml = tokenXml;
+        this(tokenXml.hasAttribute("id") ? tokenXml.getAttribute("id") : null,
+                tokenXml.getAttribute("title"), tokenXml.getTextContent(), isLastTokenOnLine);
+    }
+
+    public HOCRToken(String tokenId, String title, CharSequence text, boolean isLastTokenOnLine) {
+        _text = text;
         _isLastTokenOnLine = isLastTokenOnLine;
-        _tokenId = _tokenXml.hasAttribute("id") ? _tokenXml.getAttribute("id") : null;
-
-        _tokenProperties = new Properties();
-        String title = _tokenXml.getAttribute("title");
-        String[] props = title.split(";");
-        for (String prop : props) {
-            prop = prop.trim();
-            int idx = prop.indexOf(" ");
-            String propName = prop.substring(0, idx);
-            String propValue = prop.substring(idx + 1);
-            _tokenProperties.put(propName, propValue);
-        }
+        _tokenId = tokenId;
+        _title = title;
     }
 
     public String getTokenId() {
         return _tokenId;
     }
 
+    public String getTitle() {
+        return _title;
+    }
+
+    /**
+     * @return All the properties of the title attribute, by name
+     */
     public Properties getTokenProperties() {
+        if (_tokenProperties == null) {
+            Properties tokenProperties = new Properties();
+            for (String prop : _title.split(";")) {
+                prop = prop.trim();
+                if (prop.isEmpty())
+                    continue;
+
+                int idx = prop.indexOf(' ');
+                if (idx < 0)
+                    tokenProperties.put(prop, "");
+                else
+                    tokenProperties.put(prop.substring(0, idx), prop.substring(idx + 1));
+            }
+            _tokenProperties = tokenProperties;
+        }
+
         return _tokenProperties;
     }
 
+    /**
+     * @param name The property name
+     * @return The (trimmed) value of the title property, or null if the title has no such property
+     */
+    public String getTitleProperty(String name) {
+        int start = indexOfValue(_title, name);
+        if (start < 0)
+            return null;
+
+        int end = _title.indexOf(';', start);
+
+        return _title.substring(start, end < 0 ? _title.length() : end).trim();
+    }
+
+    /**
+     * @return True if the title has a well-formed bbox property
+     */
+    public boolean hasBoundingBox() {
+        if (_bboxState == BBOX_UNPARSED)
+            parseBoundingBox();
+
+        return _bboxState == BBOX_PRESENT;
+    }
+
+    /**
+     * @return The left coordinate of the bounding box, or -1 if the token has none
+     */
+    public int getLeft() {
+        return hasBoundingBox() ? _left : -1;
+    }
+
+    /**
+     * @return The top coordinate of the bounding box, or -1 if the token has none
+     */
+    public int getTop() {
+        return hasBoundingBox() ? _top : -1;
+    }
+
+    /**
+     * @return The right coordinate of the bounding box, or -1 if the token has none
+     */
+    public int getRight() {
+        return hasBoundingBox() ? _right : -1;
+    }
+
+    /**
+     * @return The bottom coordinate of the bounding box, or -1 if the token has none
+     */
+    public int getBottom() {
+        return hasBoundingBox() ? _bottom : -1;
+    }
+
+    /**
+     * @return The OCR engine word confidence (the x_wconf property), or NaN if the token has none
+     */
+    public double getWordConfidence() {
+        String confidence = getTitleProperty("x_wconf");
+        if (confidence == null)
+            return Double.NaN;
+
+        try {
+            return Double.parseDouble(confidence);
+        }
+        catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
     public String getText() {
-        return _tokenXml.getTextContent();
+        return _text.toString();
+    }
+
+    public CharSequence getTextView() {
+        return _text;
     }
 
     public boolean isLastTokenOnLine() {
         return _isLastTokenOnLine;
     }
 
+    // parses the four coordinates of the bbox property in place
+    private void parseBoundingBox() {
+        _bboxState = BBOX_ABSENT;
+
+        int i = indexOfValue(_title, "bbox");
+        if (i < 0)
+            return;
+
+        int end = _title.indexOf(';', i);
+        if (end < 0)
+            end = _title.length();
+
+        int[] coordinates = new int[4];
+        for (int n = 0; n < 4; n++) {
+            while (i < end && _title.charAt(i) <= ' ')
+                i++;
+
+            boolean negative = i < end && _title.charAt(i) == '-';
+            if (negative)
+                i++;
+
+            int start = i;
+            int value = 0;
+            while (i < end && _title.charAt(i) >= '0' && _title.charAt(i) <= '9')
+                value = value * 10 + (_title.charAt(i++) - '0');
+
+            if (i == start || (i < end && _title.charAt(i) > ' '))
+                return;
+
+            coordinates[n] = negative ? -value : value;
+        }
+
+        _left = coordinates[0];
+        _top = coordinates[1];
+        _right = coordinates[2];
+        _bottom = coordinates[3];
+        _bboxState = BBOX_PRESENT;
+    }
+
+    // returns the index following the name of the property in the title, or -1 if the title has no such property
+    private static int indexOfValue(String title, String name) {
+        int length = title.length();
+        int start = 0;
+
+        while (start < length) {
+            int end = title.indexOf(';', start);
+            if (end < 0)
+                end = length;
+
+            while (start < end && title.charAt(start) <= ' ')
+                start++;
+
+            int nameEnd = start + name.length();
+            if (title.startsWith(name, start) && (nameEnd == end || title.charAt(nameEnd) <= ' '))
+                return nameEnd;
+
+            start = end + 1;
+        }
+
+        return -1;
+    }
+
     @Override
     public String toString() {
         return Objects.toStringHelper(getText())
                 .add("isLastTokenOnLine", _isLastTokenOnLine)
                 .add("id", _tokenId)
-                .add("properties", _tokenProperties)
+                .add("title", _title)
                 .toString();
     }
 }
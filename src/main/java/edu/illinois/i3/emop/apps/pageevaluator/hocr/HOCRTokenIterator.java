@@ -21,7 +21,8 @@ public class HOCRTokenIterator extends AbstractIterator<HOCRToken> implements It
     public HOCRTokenIterator(Element pageXml) {
         _pageXml = pageXml;
 
-        XPath xpath = XPathFactory.newInstance().newXPath();
+        XPath xpath = HOCRPage.XPaths.get();
+        xpath.reset();
         try {
             _xpathToken = xpath.compile("descendant::*[@class='ocrx_word']");
             _lines = (NodeList) xpath.evaluate("descendant::*[@class='ocr_line']", pageXml, XPathConstants.NODESET);
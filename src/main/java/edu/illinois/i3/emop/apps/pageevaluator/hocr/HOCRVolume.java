@@ -0,0 +1,156 @@
+package edu.illinois.i3.emop.apps.pageevaluator.hocr;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Sets;
+import edu.illinois.i3.emop.apps.pageevaluator.XMLStreamReaders;
+import edu.illinois.i3.emop.apps.pageevaluator.exceptions.PageParserException;
+import edu.illinois.i3.emop.apps.pageevaluator.metrics.ScoringMetrics;
+import edu.illinois.i3.emop.apps.pageevaluator.metrics.Stage;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Iterates over all the ocr_page elements of an hOCR document (e.g. a whole volume) in a single forward pass
+ * over its XML events. Each page is returned as a {@link HOCRStreamPage}, whose tokens must be read before moving
+ * on to the next page (unread tokens are skipped when the next page is requested). As pages are streamed,
+ * at most one line of the document is held in memory at any time.
+ */
+public class HOCRVolume extends AbstractIterator<HOCRStreamPage> {
+
+    // Volume metadata
+    private final String _ocrEngine;
+    private final Set<String> _ocrCapabilities;
+    private final XMLStreamReader _xmlReader;
+
+    // true when the stream reader is positioned on the start of an ocr_page element that has not been returned yet
+    private boolean _atPageStart;
+    private HOCRStreamPage _currentPage;
+    private int _pageCount;
+
+    private HOCRVolume(XMLStreamReader xmlReader, String ocrEngine, Set<String> ocrCapabilities, boolean atPageStart) {
+        _xmlReader = xmlReader;
+        _ocrEngine = ocrEngine;
+        _ocrCapabilities = ocrCapabilities;
+        _atPageStart = atPageStart;
+    }
+
+    /**
+     * Reads the document metadata, up to the start of the first ocr_page element
+     *
+     * @param volumeReader The document reader, which must not be closed before all pages have been read
+     * @return The volume
+     * @throws PageParserException If the document is not well-formed
+     */
+    public static HOCRVolume open(Reader volumeReader) throws PageParserException {
+        long start = System.nanoTime();
+        try {
+            XMLStreamReader xmlReader = XMLStreamReaders.create(volumeReader);
+
+            String ocrEngine = null;
+            String capabilities = null;
+            int depth = 0;
+            boolean inHtml = false;
+            boolean inHead = false;
+            boolean atPageStart = false;
+
+            while (!atPageStart && xmlReader.hasNext()) {
+                switch (xmlReader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        depth++;
+                        String name = xmlReader.getLocalName();
+
+                        if (depth == 1 && name.equals("html"))
+                            inHtml = true;
+                        else if (depth == 2 && inHtml && name.equals("head"))
+                            inHead = true;
+                        else if (depth == 3 && inHead && name.equals("meta")) {
+                            String metaName = xmlReader.getAttributeValue(null, "name");
+                            if (ocrEngine == null && "ocr-system".equals(metaName))
+                                ocrEngine = xmlReader.getAttributeValue(null, "content");
+                            else if (capabilities == null && "ocr-capabilities".equals(metaName))
+                                capabilities = xmlReader.getAttributeValue(null, "content");
+                        }
+                        else if (isPageStart(xmlReader))
+                            atPageStart = true;
+                        break;
+
+                    case XMLStreamConstants.END_ELEMENT:
+                        if (depth == 2)
+                            inHead = false;
+                        depth--;
+                        break;
+                }
+            }
+
+            if (!atPageStart)
+                xmlReader.close();
+
+            Set<String> ocrCapabilities = Sets.newHashSet();
+            ocrCapabilities.addAll(Arrays.asList(Strings.nullToEmpty(capabilities).split(" ")));
+            ScoringMetrics.getInstance().recordStage(Stage.PARSE, System.nanoTime() - start);
+
+            return new HOCRVolume(xmlReader, Strings.nullToEmpty(ocrEngine), ocrCapabilities, atPageStart);
+        }
+        catch (XMLStreamException e) {
+            throw new PageParserException(e);
+        }
+    }
+
+    public String getOcrEngine() {
+        return _ocrEngine;
+    }
+
+    public Set<String> getOcrCapabilities() {
+        return _ocrCapabilities;
+    }
+
+    /**
+     * @return The number of pages returned so far
+     */
+    public int getPageCount() {
+        return _pageCount;
+    }
+
+    @Override
+    protected HOCRStreamPage computeNext() {
+        if (_currentPage != null) {
+            _currentPage.skipRemainingTokens();
+            _currentPage = null;
+        }
+
+        if (!_atPageStart && !advanceToNextPage())
+            return endOfData();
+
+        _atPageStart = false;
+        _pageCount++;
+        String pageId = Strings.nullToEmpty(_xmlReader.getAttributeValue(null, "id"));
+        _currentPage = new HOCRStreamPage(pageId, _xmlReader, _ocrEngine, _ocrCapabilities);
+
+        return _currentPage;
+    }
+
+    private boolean advanceToNextPage() {
+        try {
+            while (_xmlReader.hasNext())
+                if (_xmlReader.next() == XMLStreamConstants.START_ELEMENT && isPageStart(_xmlReader))
+                    return true;
+
+            _xmlReader.close();
+        }
+        catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+
+        return false;
+    }
+
+    private static boolean isPageStart(XMLStreamReader xmlReader) {
+        return HOCRStreamTokenIterator.OCR_PAGE.equals(xmlReader.getAttributeValue(null, "class"));
+    }
+}
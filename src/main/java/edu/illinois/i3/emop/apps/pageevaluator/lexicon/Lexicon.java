@@ -0,0 +1,170 @@
+package edu.illinois.i3.emop.apps.pageevaluator.lexicon;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A read-only dictionary of word forms, memory-mapped from a file built by {@link LexiconBuilder}, so that it
+ * takes no heap space and its pages are shared by all the threads and processes using the same file.
+ *
+ * The file holds two open addressing hash tables of 64-bit hashes: the hashes of the words, and the hashes of
+ * all the forms obtained by deleting one character from a word, each tagged with the position of the deleted
+ * character. A token is near a word (one substitution, insertion, deletion or transposition away from it) if
+ * the token is a one-deletion form of the word, if one of its one-deletion forms is the word or the one-deletion
+ * form of the word at the same position (symmetric delete), or if swapping two adjacent characters of the token
+ * gives the word. Words are compared lowercased, with the long s read as s. Like any hash based set, the lexicon
+ * can report a false match, with a negligible probability.
+ *
+ * <pre>
+ *   header := MAGIC VERSION wordTableBits deleteTableBits wordCount reserved   (big-endian ints)
+ *   tables := wordTable[1 &lt;&lt; wordTableBits] deleteTable[1 &lt;&lt; deleteTableBits]   (big-endian longs, 0 = empty)
+ * </pre>
+ */
+public class Lexicon {
+
+    static final int MAGIC = 0x50454c58; // "PELX"
+    static final int VERSION = 2;
+    static final int HEADER_LENGTH = 24;
+
+    // the tokens that can be near a word (shorter tokens are near too many words)
+    public static final int MIN_NEAR_LENGTH = 3;
+    public static final int MAX_WORD_LENGTH = 32;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final LongBuffer _wordTable;
+    private final int _wordMask;
+    private final LongBuffer _deleteTable;
+    private final int _deleteMask;
+    private final int _wordCount;
+
+    private Lexicon(ByteBuffer buffer) throws IOException {
+        if (buffer.getInt(0) != MAGIC)
+            throw new IOException("Not a lexicon file");
+        if (buffer.getInt(4) != VERSION)
+            throw new IOException("Unsupported lexicon version: " + buffer.getInt(4));
+
+        int wordTableBits = buffer.getInt(8);
+        int deleteTableBits = buffer.getInt(12);
+        if (wordTableBits < 0 || wordTableBits > 27 || deleteTableBits < 0 || deleteTableBits > 27 ||
+                buffer.capacity() != HEADER_LENGTH + 8L * ((1 << wordTableBits) + (1 << deleteTableBits)))
+            throw new IOException("Corrupt lexicon file");
+
+        _wordCount = buffer.getInt(16);
+        buffer.position(HEADER_LENGTH);
+        LongBuffer tables = buffer.slice().asLongBuffer();
+
+        tables.limit(1 << wordTableBits);
+        _wordTable = tables.slice();
+        tables.limit(tables.capacity()).position(1 << wordTableBits);
+        _deleteTable = tables.slice();
+        _wordMask = (1 << wordTableBits) - 1;
+        _deleteMask = (1 << deleteTableBits) - 1;
+    }
+
+    /**
+     * Memory-maps a lexicon file
+     */
+    public static Lexicon open(File lexiconFile) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(lexiconFile, "r");
+        try {
+            // the mapping stays valid after the file is closed
+            return new Lexicon(file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length()));
+        }
+        finally {
+            file.close();
+        }
+    }
+
+    public int getWordCount() {
+        return _wordCount;
+    }
+
+    /**
+     * @param word The word, which must only contain letters
+     * @return True if the word is in the lexicon
+     */
+    public boolean contains(CharSequence word) {
+        return contains(_wordTable, _wordMask, hash(word, -1, -1));
+    }
+
+    /**
+     * @param word The word, which must only contain letters, and must not be in the lexicon
+     * @return True if the word is one edit away from a word of the lexicon
+     */
+    public boolean isNear(CharSequence word) {
+        int length = word.length();
+        if (length < MIN_NEAR_LENGTH || length > MAX_WORD_LENGTH)
+            return false;
+
+        // the word is a word missing a character
+        long hash = hash(word, -1, -1);
+        for (int i = 0; i <= length; i++)
+            if (contains(_deleteTable, _deleteMask, tag(hash, i)))
+                return true;
+
+        // the word has an extra character, or a substituted character
+        for (int i = 0; i < length; i++) {
+            hash = hash(word, i, -1);
+            if (contains(_wordTable, _wordMask, hash) || contains(_deleteTable, _deleteMask, tag(hash, i)))
+                return true;
+        }
+
+        // the word has two transposed characters
+        for (int i = 0; i < length - 1; i++)
+            if (contains(_wordTable, _wordMask, hash(word, -1, i)))
+                return true;
+
+        return false;
+    }
+
+    private static boolean contains(LongBuffer table, int mask, long hash) {
+        for (int i = slot(hash, mask); ; i = (i + 1) & mask) {
+            long entry = table.get(i);
+            if (entry == hash)
+                return true;
+            if (entry == 0)
+                return false;
+        }
+    }
+
+    static int slot(long hash, int mask) {
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * @param word The word
+     * @param skip The index of a character left out of the hash, or -1
+     * @param swap The index of a character swapped with the next one, or -1
+     * @return The (non zero) 64-bit FNV-1a hash of the normalized word
+     */
+    static long hash(CharSequence word, int skip, int swap) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < word.length(); i++) {
+            if (i == skip)
+                continue;
+
+            char c = word.charAt(i == swap ? i + 1 : i == swap + 1 && swap >= 0 ? i - 1 : i);
+            c = c == '\u017f' ? 's' : Character.toLowerCase(c);
+            hash = (hash ^ c) * FNV_PRIME;
+        }
+
+        return hash != 0 ? hash : 1;
+    }
+
+    /**
+     * @param hash The hash of a one-deletion form
+     * @param position The index of the deleted character
+     * @return The (non zero) hash of the one-deletion form tagged with the position, as stored in the delete table
+     */
+    static long tag(long hash, int position) {
+        hash = (hash ^ (position + 1)) * FNV_PRIME;
+
+        return hash != 0 ? hash : 1;
+    }
+}
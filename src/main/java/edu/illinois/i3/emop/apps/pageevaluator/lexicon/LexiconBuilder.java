@@ -0,0 +1,129 @@
+package edu.illinois.i3.emop.apps.pageevaluator.lexicon;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Builds a {@link Lexicon} file from a word list: one word per line (only the first whitespace separated field
+ * of each line is read, and lines starting with '#' are ignored). Words containing non-letters are skipped.
+ */
+public class LexiconBuilder {
+
+    // the tables are at most half full
+    private static final int LOAD_FACTOR_INVERSE = 2;
+
+    private long[] _wordTable = new long[1 << 10];
+    private long[] _deleteTable = new long[1 << 12];
+    private int _wordCount;
+    private int _deleteCount;
+
+    /**
+     * @param word The word to add
+     * @return True if the word was added (i.e. it only contains letters, is not too long, and was not added before)
+     */
+    public boolean add(String word) {
+        if (word.isEmpty() || word.length() > Lexicon.MAX_WORD_LENGTH)
+            return false;
+        for (int i = 0; i < word.length(); i++)
+            if (!Character.isLetter(word.charAt(i)))
+                return false;
+
+        if ((_wordCount + 1) * LOAD_FACTOR_INVERSE > _wordTable.length)
+            _wordTable = rehash(_wordTable);
+        if (!insert(_wordTable, Lexicon.hash(word, -1, -1)))
+            return false;
+        _wordCount++;
+
+        if (word.length() > 1)
+            for (int i = 0; i < word.length(); i++) {
+                if ((_deleteCount + 1) * LOAD_FACTOR_INVERSE > _deleteTable.length)
+                    _deleteTable = rehash(_deleteTable);
+                if (insert(_deleteTable, Lexicon.tag(Lexicon.hash(word, i, -1), i)))
+                    _deleteCount++;
+            }
+
+        return true;
+    }
+
+    public int getWordCount() {
+        return _wordCount;
+    }
+
+    /**
+     * Adds the words of a word list file
+     *
+     * @return The number of words added
+     */
+    public int addWords(File wordListFile) throws IOException {
+        int count = 0;
+        BufferedReader reader = Files.newReader(wordListFile, Charsets.UTF_8);
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+
+                if (add(line.split("\\s+", 2)[0]))
+                    count++;
+            }
+        }
+        finally {
+            reader.close();
+        }
+
+        return count;
+    }
+
+    public void write(File lexiconFile) throws IOException {
+        DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(lexiconFile), 1 << 16));
+        try {
+            outputStream.writeInt(Lexicon.MAGIC);
+            outputStream.writeInt(Lexicon.VERSION);
+            outputStream.writeInt(Integer.numberOfTrailingZeros(_wordTable.length));
+            outputStream.writeInt(Integer.numberOfTrailingZeros(_deleteTable.length));
+            outputStream.writeInt(_wordCount);
+            outputStream.writeInt(0);
+
+            for (long entry : _wordTable)
+                outputStream.writeLong(entry);
+            for (long entry : _deleteTable)
+                outputStream.writeLong(entry);
+        }
+        finally {
+            outputStream.close();
+        }
+    }
+
+    // returns false if the hash was already in the table
+    private static boolean insert(long[] table, long hash) {
+        int mask = table.length - 1;
+        for (int i = Lexicon.slot(hash, mask); ; i = (i + 1) & mask) {
+            if (table[i] == hash)
+                return false;
+            if (table[i] == 0) {
+                table[i] = hash;
+                return true;
+            }
+        }
+    }
+
+    private static long[] rehash(long[] table) {
+        if (table.length >= 1 << 27)
+            throw new IllegalStateException("The lexicon is too large");
+
+        long[] newTable = new long[table.length * 2];
+        for (long entry : table)
+            if (entry != 0)
+                insert(newTable, entry);
+
+        return newTable;
+    }
+}
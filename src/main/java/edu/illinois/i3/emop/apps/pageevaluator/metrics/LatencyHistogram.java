@@ -0,0 +1,55 @@
+package edu.illinois.i3.emop.apps.pageevaluator.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread safe histogram of latencies with power of two bucket bounds, from 16ns to about 1ms
+ * (latencies above the last bound are only counted in the sum and total count).
+ */
+public class LatencyHistogram {
+
+    private static final int MIN_BOUND_SHIFT = 4;
+    public static final int BUCKET_COUNT = 17;
+
+    private final AtomicLongArray _bucketCounts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong _count = new AtomicLong();
+    private final AtomicLong _sumNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        int bucket = nanos <= (1L << MIN_BOUND_SHIFT) ? 0 : 64 - Long.numberOfLeadingZeros(nanos - 1) - MIN_BOUND_SHIFT;
+        if (bucket < BUCKET_COUNT)
+            _bucketCounts.incrementAndGet(bucket);
+
+        _count.incrementAndGet();
+        _sumNanos.addAndGet(nanos);
+    }
+
+    /**
+     * @param bucket The bucket index
+     * @return The (inclusive) upper bound of the bucket, in nanoseconds
+     */
+    public static long getBucketBound(int bucket) {
+        return 1L << (bucket + MIN_BOUND_SHIFT);
+    }
+
+    /**
+     * @param bucket The bucket index
+     * @return The number of latencies below or equal to the upper bound of the bucket
+     */
+    public long getCumulativeCount(int bucket) {
+        long count = 0;
+        for (int i = 0; i <= bucket; i++)
+            count += _bucketCounts.get(i);
+
+        return count;
+    }
+
+    public long getCount() {
+        return _count.get();
+    }
+
+    public long getSumNanos() {
+        return _sumNanos.get();
+    }
+}
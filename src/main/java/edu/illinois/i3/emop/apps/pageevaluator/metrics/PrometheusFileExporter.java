@@ -0,0 +1,75 @@
+package edu.illinois.i3.emop.apps.pageevaluator.metrics;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically writes the scoring metrics to a file in the Prometheus text format (e.g. for the node exporter
+ * textfile collector). The file is replaced atomically, so it is never read partially written.
+ */
+public class PrometheusFileExporter {
+
+    private static final Logger log = LoggerFactory.getLogger(PrometheusFileExporter.class);
+
+    private final ScoringMetrics _metrics;
+    private final File _metricsFile;
+    private final int _intervalSeconds;
+    private final ScheduledExecutorService _scheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("metrics-exporter").setDaemon(true).build());
+
+    public PrometheusFileExporter(ScoringMetrics metrics, File metricsFile, int intervalSeconds) {
+        if (intervalSeconds <= 0)
+            throw new IllegalArgumentException("The metrics export interval must be positive");
+
+        _metrics = metrics;
+        _metricsFile = metricsFile;
+        _intervalSeconds = intervalSeconds;
+    }
+
+    public void start() {
+        _scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    export();
+                }
+                catch (IOException e) {
+                    log.warn("Cannot write metrics to " + _metricsFile, e);
+                }
+            }
+        }, _intervalSeconds, _intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops the periodic export, and writes the final metrics
+     */
+    public void stop() throws IOException, InterruptedException {
+        _scheduler.shutdown();
+        _scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        export();
+    }
+
+    public synchronized void export() throws IOException {
+        File tmpFile = new File(_metricsFile.getPath() + ".tmp");
+        Writer writer = Files.newWriter(tmpFile, Charsets.UTF_8);
+        try {
+            _metrics.writePrometheus(writer);
+        }
+        finally {
+            writer.close();
+        }
+
+        if (!tmpFile.renameTo(_metricsFile))
+            throw new IOException("Cannot replace " + _metricsFile);
+    }
+}
@@ -0,0 +1,245 @@
+package edu.illinois.i3.emop.apps.pageevaluator.metrics;
+
+import com.google.common.collect.Maps;
+import edu.illinois.i3.emop.apps.pageevaluator.classifier.TokenCategory;
+import edu.illinois.i3.emop.apps.pageevaluator.exceptions.PageParserException;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Process wide scoring metrics: time spent in each {@link Stage}, counts of scored pages, tokens and bytes,
+ * failures by cause, the classification latency of each token category, and the depth of the queues between
+ * the stages of a pipelined batch run.
+ *
+ * Recording is cheap enough to be always on: stages are timed once per page, and the classification latency
+ * is only measured for one in {@link #CLASSIFICATION_SAMPLING_INTERVAL} tokens.
+ */
+public class ScoringMetrics implements ScoringMetricsMXBean {
+
+    public static final int CLASSIFICATION_SAMPLING_INTERVAL = 64;
+    public static final String OBJECT_NAME = "edu.illinois.i3.emop.apps.pageevaluator:type=ScoringMetrics";
+
+    private static final ScoringMetrics INSTANCE = new ScoringMetrics();
+
+    private final AtomicLong _pageCount = new AtomicLong();
+    private final AtomicLong _tokenCount = new AtomicLong();
+    private final AtomicLong _byteCount = new AtomicLong();
+    private final ConcurrentMap<String, AtomicLong> _failureCounts = Maps.newConcurrentMap();
+    private final AtomicLongArray _stageNanos = new AtomicLongArray(Stage.values().length);
+    private final AtomicLongArray _stageCounts = new AtomicLongArray(Stage.values().length);
+    private final LatencyHistogram[] _classificationLatencies = new LatencyHistogram[TokenCategory.values().length];
+    private final ConcurrentMap<String, Collection<?>> _queues = Maps.newConcurrentMap();
+
+    private ScoringMetrics() {
+        for (int i = 0; i < _classificationLatencies.length; i++)
+            _classificationLatencies[i] = new LatencyHistogram();
+    }
+
+    public static ScoringMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server (once)
+     */
+    public void registerMBean() throws JMException {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        }
+        catch (InstanceAlreadyExistsException ignored) { }
+    }
+
+    public void recordStage(Stage stage, long nanos) {
+        _stageNanos.addAndGet(stage.ordinal(), nanos);
+        _stageCounts.incrementAndGet(stage.ordinal());
+    }
+
+    /**
+     * Records the classification latency of a sampled token
+     */
+    public void recordClassification(TokenCategory category, long nanos) {
+        _classificationLatencies[category.ordinal()].record(nanos);
+        _stageNanos.addAndGet(Stage.CLASSIFY.ordinal(), nanos * CLASSIFICATION_SAMPLING_INTERVAL);
+        _stageCounts.addAndGet(Stage.CLASSIFY.ordinal(), CLASSIFICATION_SAMPLING_INTERVAL);
+    }
+
+    public void recordPage(int tokenCount) {
+        _pageCount.incrementAndGet();
+        _tokenCount.addAndGet(tokenCount);
+    }
+
+    public void recordBytes(long byteCount) {
+        _byteCount.addAndGet(byteCount);
+    }
+
+    public void recordFailure(Throwable error) {
+        String cause = getCause(error);
+        AtomicLong count = _failureCounts.get(cause);
+        if (count == null) {
+            AtomicLong existing = _failureCounts.putIfAbsent(cause, count = new AtomicLong());
+            if (existing != null)
+                count = existing;
+        }
+
+        count.incrementAndGet();
+    }
+
+    /**
+     * Reports the depth of a queue until it is unregistered
+     *
+     * @param name The queue name
+     * @param queue The queue, whose size must be safe to read from any thread
+     */
+    public void registerQueue(String name, Collection<?> queue) {
+        _queues.put(name, queue);
+    }
+
+    public void unregisterQueue(String name) {
+        _queues.remove(name);
+    }
+
+    @Override
+    public long getPageCount() {
+        return _pageCount.get();
+    }
+
+    @Override
+    public long getTokenCount() {
+        return _tokenCount.get();
+    }
+
+    @Override
+    public long getByteCount() {
+        return _byteCount.get();
+    }
+
+    @Override
+    public long getFailureCount() {
+        long count = 0;
+        for (AtomicLong causeCount : _failureCounts.values())
+            count += causeCount.get();
+
+        return count;
+    }
+
+    @Override
+    public Map<String, Long> getFailureCountsByCause() {
+        Map<String, Long> counts = Maps.newTreeMap();
+        for (Map.Entry<String, AtomicLong> entry : _failureCounts.entrySet())
+            counts.put(entry.getKey(), entry.getValue().get());
+
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getStageSeconds() {
+        Map<String, Double> seconds = Maps.newLinkedHashMap();
+        for (Stage stage : Stage.values())
+            seconds.put(getName(stage), _stageNanos.get(stage.ordinal()) / 1e9);
+
+        return seconds;
+    }
+
+    @Override
+    public Map<String, Long> getStageCounts() {
+        Map<String, Long> counts = Maps.newLinkedHashMap();
+        for (Stage stage : Stage.values())
+            counts.put(getName(stage), _stageCounts.get(stage.ordinal()));
+
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getMeanClassificationNanos() {
+        Map<String, Double> means = Maps.newLinkedHashMap();
+        for (TokenCategory category : TokenCategory.values()) {
+            LatencyHistogram histogram = _classificationLatencies[category.ordinal()];
+            long count = histogram.getCount();
+            means.put(getName(category), count > 0 ? (double) histogram.getSumNanos() / count : 0.0);
+        }
+
+        return means;
+    }
+
+    @Override
+    public Map<String, Integer> getQueueDepths() {
+        Map<String, Integer> depths = Maps.newTreeMap();
+        for (Map.Entry<String, Collection<?>> entry : _queues.entrySet())
+            depths.put(entry.getKey(), entry.getValue().size());
+
+        return depths;
+    }
+
+    /**
+     * Writes the metrics in the Prometheus text exposition format
+     */
+    public void writePrometheus(Writer writer) throws IOException {
+        writeHeader(writer, "pageevaluator_pages_total", "counter", "Pages scored");
+        writer.write("pageevaluator_pages_total " + _pageCount.get() + "\n");
+        writeHeader(writer, "pageevaluator_tokens_total", "counter", "Tokens scored");
+        writer.write("pageevaluator_tokens_total " + _tokenCount.get() + "\n");
+        writeHeader(writer, "pageevaluator_bytes_total", "counter", "Bytes of page files scored");
+        writer.write("pageevaluator_bytes_total " + _byteCount.get() + "\n");
+
+        writeHeader(writer, "pageevaluator_failures_total", "counter", "Pages that failed to be scored, by cause");
+        for (Map.Entry<String, Long> entry : getFailureCountsByCause().entrySet())
+            writer.write("pageevaluator_failures_total{cause=\"" + entry.getKey() + "\"} " + entry.getValue() + "\n");
+
+        writeHeader(writer, "pageevaluator_stage_seconds_total", "counter", "Time spent in each scoring stage");
+        for (Stage stage : Stage.values())
+            writer.write(String.format(Locale.ROOT, "pageevaluator_stage_seconds_total{stage=\"%s\"} %.6f\n",
+                    getName(stage), _stageNanos.get(stage.ordinal()) / 1e9));
+        writeHeader(writer, "pageevaluator_stage_calls_total", "counter", "Executions of each scoring stage (estimated tokens for classification)");
+        for (Stage stage : Stage.values())
+            writer.write("pageevaluator_stage_calls_total{stage=\"" + getName(stage) + "\"} " + _stageCounts.get(stage.ordinal()) + "\n");
+
+        writeHeader(writer, "pageevaluator_classification_latency_seconds", "histogram",
+                "Classification latency of sampled tokens, by token category");
+        for (TokenCategory category : TokenCategory.values()) {
+            LatencyHistogram histogram = _classificationLatencies[category.ordinal()];
+            String name = getName(category);
+            for (int bucket = 0; bucket < LatencyHistogram.BUCKET_COUNT; bucket++)
+                writer.write(String.format(Locale.ROOT, "pageevaluator_classification_latency_seconds_bucket{category=\"%s\",le=\"%.3e\"} %d\n",
+                        name, LatencyHistogram.getBucketBound(bucket) / 1e9, histogram.getCumulativeCount(bucket)));
+            writer.write("pageevaluator_classification_latency_seconds_bucket{category=\"" + name + "\",le=\"+Inf\"} " + histogram.getCount() + "\n");
+            writer.write(String.format(Locale.ROOT, "pageevaluator_classification_latency_seconds_sum{category=\"%s\"} %.9f\n",
+                    name, histogram.getSumNanos() / 1e9));
+            writer.write("pageevaluator_classification_latency_seconds_count{category=\"" + name + "\"} " + histogram.getCount() + "\n");
+        }
+
+        Map<String, Integer> queueDepths = getQueueDepths();
+        if (!queueDepths.isEmpty()) {
+            writeHeader(writer, "pageevaluator_queue_depth", "gauge", "Items waiting in each queue of the batch pipeline");
+            for (Map.Entry<String, Integer> entry : queueDepths.entrySet())
+                writer.write("pageevaluator_queue_depth{queue=\"" + entry.getKey() + "\"} " + entry.getValue() + "\n");
+        }
+    }
+
+    private static void writeHeader(Writer writer, String name, String type, String help) throws IOException {
+        writer.write("# HELP " + name + " " + help + "\n");
+        writer.write("# TYPE " + name + " " + type + "\n");
+    }
+
+    private static String getName(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+
+    // the underlying cause of parser failures, or the type of the error
+    private static String getCause(Throwable error) {
+        if (error instanceof PageParserException && error.getCause() != null)
+            error = error.getCause();
+
+        return error.getClass().getSimpleName();
+    }
+}
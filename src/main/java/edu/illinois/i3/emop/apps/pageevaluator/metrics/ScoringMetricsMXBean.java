@@ -0,0 +1,28 @@
+package edu.illinois.i3.emop.apps.pageevaluator.metrics;
+
+import java.util.Map;
+
+/**
+ * The management interface of the scoring metrics
+ */
+public interface ScoringMetricsMXBean {
+
+    long getPageCount();
+
+    long getTokenCount();
+
+    long getByteCount();
+
+    long getFailureCount();
+
+    Map<String, Long> getFailureCountsByCause();
+
+    Map<String, Double> getStageSeconds();
+
+    Map<String, Long> getStageCounts();
+
+    Map<String, Double> getMeanClassificationNanos();
+
+    Map<String, Integer> getQueueDepths();
+
+}
@@ -0,0 +1,15 @@
+package edu.illinois.i3.emop.apps.pageevaluator.metrics;
+
+/**
+ * The timed stages of scoring a page
+ */
+public enum Stage {
+    /** Parsing the page up to its tokens (the hOCR DOM, or reading and joining the lines of text pages) */
+    PARSE,
+    /** Splitting the text of (non streamed) text pages into tokens */
+    TOKENIZE,
+    /** Iterating over the tokens of a page and classifying them (including the XPath queries or the parsing of streamed pages) */
+    SCORE,
+    /** Classifying the tokens (estimated from the sampled tokens) */
+    CLASSIFY
+}
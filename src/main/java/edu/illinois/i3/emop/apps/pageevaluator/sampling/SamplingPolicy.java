@@ -0,0 +1,68 @@
+package edu.illinois.i3.emop.apps.pageevaluator.sampling;
+
+/**
+ * When to stop scoring the randomly sampled lines of a page: once the confidence intervals of both scores are
+ * narrower than the tolerance, or once the interval of the correctable score lies entirely above or below
+ * the threshold (the page is then clearly worth, or clearly not worth, correcting).
+ */
+public class SamplingPolicy {
+
+    public static final int DEFAULT_MIN_LINES = 10;
+
+    private final double _tolerance;
+    private final double _threshold;
+    private final long _seed;
+    private int _minLines = DEFAULT_MIN_LINES;
+
+    /**
+     * @param tolerance The maximum width of the confidence intervals
+     * @param threshold The correctable score threshold, or NaN to only stop on the tolerance
+     * @param seed The seed of the random line order, so that estimates are reproducible
+     */
+    public SamplingPolicy(double tolerance, double threshold, long seed) {
+        if (!(tolerance > 0))
+            throw new IllegalArgumentException("The sampling tolerance must be positive");
+
+        _tolerance = tolerance;
+        _threshold = threshold;
+        _seed = seed;
+    }
+
+    public double getTolerance() {
+        return _tolerance;
+    }
+
+    public double getThreshold() {
+        return _threshold;
+    }
+
+    public long getSeed() {
+        return _seed;
+    }
+
+    public int getMinLines() {
+        return _minLines;
+    }
+
+    /**
+     * @param minLines The number of lines scored before the stopping conditions are checked
+     */
+    public void setMinLines(int minLines) {
+        if (minLines < 2)
+            throw new IllegalArgumentException("At least 2 lines must be sampled");
+
+        _minLines = minLines;
+    }
+
+    /**
+     * @return True if no more lines need to be sampled
+     */
+    public boolean isSatisfied(ScoreEstimate estimate) {
+        if (estimate.getCorrectableHigh() - estimate.getCorrectableLow() <= _tolerance &&
+                estimate.getQualityHigh() - estimate.getQualityLow() <= _tolerance)
+            return true;
+
+        return !Double.isNaN(_threshold) &&
+                (estimate.getCorrectableLow() > _threshold || estimate.getCorrectableHigh() < _threshold);
+    }
+}
@@ -0,0 +1,76 @@
+package edu.illinois.i3.emop.apps.pageevaluator.sampling;
+
+import com.google.common.base.Objects;
+
+/**
+ * The 95% confidence intervals of the scores of a page estimated from a sample of its lines,
+ * and the fraction of the page that was examined. Bounds are NaN when unknown (e.g. for the aggregated
+ * statistics of a volume).
+ */
+public class ScoreEstimate {
+
+    private final double _correctableLow;
+    private final double _correctableHigh;
+    private final double _qualityLow;
+    private final double _qualityHigh;
+    private final int _sampledTokenCount;
+    private final int _totalTokenCount;
+
+    public ScoreEstimate(double correctableLow, double correctableHigh, double qualityLow, double qualityHigh,
+                         int sampledTokenCount, int totalTokenCount) {
+        _correctableLow = correctableLow;
+        _correctableHigh = correctableHigh;
+        _qualityLow = qualityLow;
+        _qualityHigh = qualityHigh;
+        _sampledTokenCount = sampledTokenCount;
+        _totalTokenCount = totalTokenCount;
+    }
+
+    /**
+     * Combines the estimates of two parts of a document (the bounds of the combination are unknown)
+     */
+    public static ScoreEstimate merge(ScoreEstimate estimate, ScoreEstimate other) {
+        return new ScoreEstimate(Double.NaN, Double.NaN, Double.NaN, Double.NaN,
+                estimate._sampledTokenCount + other._sampledTokenCount, estimate._totalTokenCount + other._totalTokenCount);
+    }
+
+    public double getCorrectableLow() {
+        return _correctableLow;
+    }
+
+    public double getCorrectableHigh() {
+        return _correctableHigh;
+    }
+
+    public double getQualityLow() {
+        return _qualityLow;
+    }
+
+    public double getQualityHigh() {
+        return _qualityHigh;
+    }
+
+    public int getSampledTokenCount() {
+        return _sampledTokenCount;
+    }
+
+    public int getTotalTokenCount() {
+        return _totalTokenCount;
+    }
+
+    /**
+     * @return The fraction of the tokens of the page that were scored
+     */
+    public double getExaminedFraction() {
+        return _totalTokenCount > 0 ? (double) _sampledTokenCount / _totalTokenCount : 1.0;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("correctable", "[" + _correctableLow + ", " + _correctableHigh + "]")
+                .add("quality", "[" + _qualityLow + ", " + _qualityHigh + "]")
+                .add("examinedFraction", getExaminedFraction())
+                .toString();
+    }
+}
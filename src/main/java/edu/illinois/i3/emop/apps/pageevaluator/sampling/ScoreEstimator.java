@@ -0,0 +1,116 @@
+package edu.illinois.i3.emop.apps.pageevaluator.sampling;
+
+import edu.illinois.i3.emop.apps.pageevaluator.OCRPageStats;
+
+/**
+ * Estimates the scores of a page from the statistics of a simple random sample of its lines.
+ *
+ * Both scores are ratios of token counts summed over the lines of the page (e.g. the quality score is the number
+ * of tokens matching the correctable profile divided by the number of tokens), so each is estimated by the ratio of
+ * the sums over the sampled lines. Its variance is approximated by linearization, with the finite population
+ * correction, which makes the interval collapse to the exact score once all the lines have been sampled.
+ */
+public class ScoreEstimator {
+
+    // two-sided 95% normal quantile
+    private static final double Z = 1.96;
+
+    private final int _lineCount;
+    private final int _totalTokenCount;
+
+    private int _sampledLineCount;
+    private int _sampledTokenCount;
+    private final RatioMoments _correctable = new RatioMoments();
+    private final RatioMoments _quality = new RatioMoments();
+
+    /**
+     * @param lineCount The number of lines of the page
+     * @param totalTokenCount The number of tokens of the page
+     */
+    public ScoreEstimator(int lineCount, int totalTokenCount) {
+        _lineCount = lineCount;
+        _totalTokenCount = totalTokenCount;
+    }
+
+    /**
+     * @param lineStats The statistics of a sampled line
+     * @param lineTokenCount The number of tokens of the line
+     */
+    public void addLine(OCRPageStats lineStats, int lineTokenCount) {
+        int profileCount = lineStats.getCleanAllAlphaNoRepTokenCount() + lineStats.getCleanOneNonAlphaNoRepTokenCount() +
+                lineStats.getCleanTwoNonAlphaNoRepTokenCount();
+        int correctableCount = lineStats.getTokenCount() - lineStats.getIgnoredTokenCount() - lineStats.getCleanShortWordCount();
+
+        _correctable.add(profileCount, correctableCount);
+        _quality.add(profileCount, lineStats.getTokenCount());
+        _sampledLineCount++;
+        _sampledTokenCount += lineTokenCount;
+    }
+
+    public int getSampledLineCount() {
+        return _sampledLineCount;
+    }
+
+    public ScoreEstimate getEstimate() {
+        double correctableHalfWidth = getHalfWidth(_correctable);
+        double qualityHalfWidth = getHalfWidth(_quality);
+        double correctable = _correctable.getRatio();
+        double quality = _quality.getRatio();
+
+        return new ScoreEstimate(
+                getLowerBound(correctable, correctableHalfWidth), getUpperBound(correctable, correctableHalfWidth),
+                getLowerBound(quality, qualityHalfWidth), getUpperBound(quality, qualityHalfWidth),
+                _sampledTokenCount, _totalTokenCount);
+    }
+
+    private double getHalfWidth(RatioMoments moments) {
+        int m = _sampledLineCount;
+        if (m >= _lineCount)
+            return 0;
+        if (m < 2 || moments._denominatorSum == 0)
+            return Double.POSITIVE_INFINITY;
+
+        double ratio = moments.getRatio();
+        double residualVariance = Math.max(0, moments._numeratorSquares - 2 * ratio * moments._crossProducts +
+                ratio * ratio * moments._denominatorSquares) / (m - 1);
+        double meanDenominator = moments._denominatorSum / m;
+        double variance = (1 - (double) m / _lineCount) * residualVariance / (m * meanDenominator * meanDenominator);
+
+        return Z * Math.sqrt(variance);
+    }
+
+    // an undefined ratio is only known to be undefined (a score of -1) once all the lines have been sampled
+    private static double getLowerBound(double ratio, double halfWidth) {
+        if (Double.isNaN(ratio))
+            return halfWidth == 0 ? -1 : 0;
+
+        return Math.max(0, ratio - halfWidth);
+    }
+
+    private static double getUpperBound(double ratio, double halfWidth) {
+        if (Double.isNaN(ratio))
+            return halfWidth == 0 ? -1 : 1;
+
+        return Math.min(1, ratio + halfWidth);
+    }
+
+    private static class RatioMoments {
+        private double _numeratorSum;
+        private double _denominatorSum;
+        private double _numeratorSquares;
+        private double _denominatorSquares;
+        private double _crossProducts;
+
+        private void add(int numerator, int denominator) {
+            _numeratorSum += numerator;
+            _denominatorSum += denominator;
+            _numeratorSquares += (double) numerator * numerator;
+            _denominatorSquares += (double) denominator * denominator;
+            _crossProducts += (double) numerator * denominator;
+        }
+
+        private double getRatio() {
+            return _numeratorSum / _denominatorSum;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package edu.illinois.i3.emop.apps.pageevaluator.server;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Maps;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import edu.illinois.i3.emop.apps.pageevaluator.Main.DocumentFormat;
+import edu.illinois.i3.emop.apps.pageevaluator.Main.ParserEngine;
+import edu.illinois.i3.emop.apps.pageevaluator.OCRPageStats;
+import edu.illinois.i3.emop.apps.pageevaluator.PageScorer;
+import edu.illinois.i3.emop.apps.pageevaluator.batch.BatchResultWriter;
+import edu.illinois.i3.emop.apps.pageevaluator.exceptions.PageParserException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A long-running scoring service listening on the loopback interface, which avoids paying the JVM startup
+ * and JIT warm-up costs for every page.
+ *
+ * <pre>
+ *   POST /score?format=hocr[&amp;parser=streaming][&amp;counts=true]      (the page is the request body)
+ *   GET  /score?format=txt&amp;path=/path/to/page.txt[&amp;counts=true]
+ *   GET  /stats
+ * </pre>
+ *
+ * A scoring request returns the same "correctable,quality" line that is printed in quiet mode or, with counts=true,
+ * the batch mode CSV line including all the page statistics counts. The time spent scoring the page is returned in the
+ * X-Scoring-Time-Micros response header. Pages are scored with the settings of a given scorer (classifier, collectors,
+ * sampling, chunking, time budget and result cache), in the requested format.
+ */
+public class ScoringServer {
+
+    private static final Logger log = LoggerFactory.getLogger(ScoringServer.class);
+
+    private final HttpServer _httpServer;
+    private final ExecutorService _executor;
+    private final PageScorer _scorerSettings;
+    private final ConcurrentMap<String, PageScorer> _scorers = Maps.newConcurrentMap();
+
+    private final AtomicLong _requestCount = new AtomicLong();
+    private final AtomicLong _failedCount = new AtomicLong();
+    private final AtomicLong _totalScoringMicros = new AtomicLong();
+    private final AtomicLong _maxScoringMicros = new AtomicLong();
+
+    /**
+     * @param port The port to listen on
+     * @param threads The number of threads scoring pages
+     * @param scorerSettings The scorer whose settings are used to score the pages (whatever its format)
+     */
+    public ScoringServer(int port, int threads, PageScorer scorerSettings) throws IOException {
+        _scorerSettings = scorerSettings;
+        _executor = Executors.newFixedThreadPool(threads);
+        _httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        _httpServer.setExecutor(_executor);
+
+        _httpServer.createContext("/score", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                handleScore(exchange);
+            }
+        });
+
+        _httpServer.createContext("/stats", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                handleStats(exchange);
+            }
+        });
+    }
+
+    public void start() {
+        _httpServer.start();
+        log.info("Scoring server listening on {}", _httpServer.getAddress());
+    }
+
+    public void stop() throws InterruptedException {
+        _httpServer.stop(0);
+        _executor.shutdown();
+        _executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    protected void handleScore(HttpExchange exchange) throws IOException {
+        _requestCount.incrementAndGet();
+
+        try {
+            Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+            String method = exchange.getRequestMethod();
+            String path = params.get("path");
+
+            if (path == null && !method.equals("POST")) {
+                sendResponse(exchange, 400, "Either POST the page or specify its 'path'\n");
+                return;
+            }
+
+            PageScorer scorer = getScorer(params);
+            String id = path != null ? path : "request";
+            long start = System.nanoTime();
+            OCRPageStats pageStats;
+
+            if (path != null)
+                pageStats = scorer.score(new File(path));
+            else {
+                Reader pageReader = new InputStreamReader(exchange.getRequestBody(), Charsets.UTF_8);
+                try {
+                    pageStats = scorer.score(pageReader, id);
+                }
+                finally {
+                    pageReader.close();
+                }
+            }
+
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+            recordLatency(micros);
+            log.info("Scored {} ({}) in {} us", id, scorer.getFormat(), micros);
+
+            String response;
+            if (Boolean.parseBoolean(params.get("counts"))) {
+                StringWriter writer = new StringWriter();
+                BatchResultWriter resultWriter = new BatchResultWriter(writer, scorer.getStatisticsCollectors());
+                resultWriter.setEstimateColumns(scorer.getSamplingPolicy() != null);
+                resultWriter.writeResult(id, pageStats);
+                response = writer.toString();
+            }
+            else
+                response = String.format("%f,%f%n", pageStats.getCorrectableScore(), pageStats.getQualityScore());
+
+            exchange.getResponseHeaders().add("X-Scoring-Time-Micros", Long.toString(micros));
+            sendResponse(exchange, 200, response);
+        }
+        catch (IllegalArgumentException e) {
+            _failedCount.incrementAndGet();
+            sendResponse(exchange, 400, e.getMessage() + "\n");
+        }
+        catch (FileNotFoundException e) {
+            _failedCount.incrementAndGet();
+            sendResponse(exchange, 404, e.getMessage() + "\n");
+        }
+        catch (PageParserException e) {
+            _failedCount.incrementAndGet();
+            sendResponse(exchange, 422, e.getMessage() + "\n");
+        }
+        catch (Exception e) {
+            _failedCount.incrementAndGet();
+            log.error("Error scoring page", e);
+            sendResponse(exchange, 500, e + "\n");
+        }
+    }
+
+    protected void handleStats(HttpExchange exchange) throws IOException {
+        long requests = _requestCount.get();
+        long failed = _failedCount.get();
+        long scored = requests - failed;
+
+        String response = String.format(Locale.ROOT, "requests=%d%nfailed=%d%nmeanScoringMicros=%.1f%nmaxScoringMicros=%d%n",
+                requests, failed, scored > 0 ? (double) _totalScoringMicros.get() / scored : 0.0, _maxScoringMicros.get());
+
+        sendResponse(exchange, 200, response);
+    }
+
+    private PageScorer getScorer(Map<String, String> params) {
+        String formatName = params.containsKey("format") ? params.get("format") : "hocr";
+        String engineName = params.containsKey("parser") ? params.get("parser") : "standard";
+        DocumentFormat format = DocumentFormat.valueOf(formatName.toUpperCase());
+        ParserEngine engine = ParserEngine.valueOf(engineName.toUpperCase());
+
+        String key = format + "/" + engine;
+        PageScorer scorer = _scorers.get(key);
+        if (scorer == null) {
+            scorer = _scorerSettings.copy(format, engine);
+            PageScorer existing = _scorers.putIfAbsent(key, scorer);
+            if (existing != null)
+                scorer = existing;
+        }
+
+        return scorer;
+    }
+
+    private void recordLatency(long micros) {
+        _totalScoringMicros.addAndGet(micros);
+
+        long max;
+        while ((max = _maxScoringMicros.get()) < micros && !_maxScoringMicros.compareAndSet(max, micros));
+    }
+
+    private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+        Map<String, String> params = Maps.newHashMap();
+        if (query == null)
+            return params;
+
+        for (String param : Splitter.on('&').omitEmptyStrings().split(query)) {
+            int idx = param.indexOf('=');
+            String name = idx < 0 ? param : param.substring(0, idx);
+            String value = idx < 0 ? "" : param.substring(idx + 1);
+            params.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+        }
+
+        return params;
+    }
+
+    private static void sendResponse(HttpExchange exchange, int status, String response) throws IOException {
+        byte[] body = response.getBytes(Charsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+
+        OutputStream out = exchange.getResponseBody();
+        try {
+            out.write(body);
+        }
+        finally {
+            out.close();
+        }
+    }
+}
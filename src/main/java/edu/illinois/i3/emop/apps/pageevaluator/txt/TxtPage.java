@@ -1,12 +1,14 @@
 package edu.illinois.i3.emop.apps.pageevaluator.txt;
 
 
-import com.google.common.base.Joiner;
-import com.google.common.collect.Lists;
+import com.google.common.collect.AbstractIterator;
 import edu.illinois.i3.emop.apps.pageevaluator.OCRPage;
 import edu.illinois.i3.emop.apps.pageevaluator.OCRToken;
 import edu.illinois.i3.emop.apps.pageevaluator.exceptions.PageParserException;
+import edu.illinois.i3.emop.apps.pageevaluator.metrics.ScoringMetrics;
+import edu.illinois.i3.emop.apps.pageevaluator.metrics.Stage;
 import opennlp.tools.tokenize.Tokenizer;
+import opennlp.tools.util.Span;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -14,7 +16,6 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.Iterator;
-import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -24,19 +25,26 @@ public class TxtPage extends OCRPage<TxtPageStats> {
     private static final Pattern HYPHEN_WORD_MATCHER = Pattern.compile("(?m)(\\S*\\p{L})-\\n(\\p{L}\\S*)\\s*");
 
     private final String _pageId;
-    private final List<TxtToken> _tokens;
+    private final String _text;
+    // the [start, end) offsets of the tokens in the page text
+    private final int[] _tokenOffsets;
 
-    private TxtPage(String pageId, String[] tokens) {
+    private TxtPage(String pageId, String text, Span[] tokenSpans) {
         _pageId = pageId;
+        _text = text;
 
-        _tokens = Lists.newArrayListWithExpectedSize(tokens.length);
-        for (String token : tokens)
-            _tokens.add(new TxtToken(token));
+        _tokenOffsets = new int[tokenSpans.length * 2];
+        for (int i = 0; i < tokenSpans.length; i++) {
+            _tokenOffsets[2 * i] = tokenSpans[i].getStart();
+            _tokenOffsets[2 * i + 1] = tokenSpans[i].getEnd();
+        }
     }
 
     public static TxtPage parse(Reader pageReader, String pageId, Tokenizer tokenizer) throws PageParserException {
         BufferedReader reader = (pageReader instanceof BufferedReader) ?
             (BufferedReader) pageReader : new BufferedReader(pageReader);
+        ScoringMetrics metrics = ScoringMetrics.getInstance();
+        long start = System.nanoTime();
         try {
             StringBuilder sb = new StringBuilder();
             String line;
@@ -50,9 +58,12 @@ public class TxtPage extends OCRPage<TxtPageStats> {
             String text = sb.toString();
             Matcher matcher = HYPHEN_WORD_MATCHER.matcher(text);
             text = matcher.replaceAll("$1$2\n");
+            long tokenizeStart = System.nanoTime();
+            metrics.recordStage(Stage.PARSE, tokenizeStart - start);
 
-            String[] tokens = tokenizer.tokenize(text);
-            return new TxtPage(pageId, tokens);
+            Span[] tokenSpans = tokenizer.tokenizePos(text);
+            metrics.recordStage(Stage.TOKENIZE, System.nanoTime() - tokenizeStart);
+            return new TxtPage(pageId, text, tokenSpans);
         }
         catch (IOException e) {
             log.error("Txt parser error", e);
@@ -62,7 +73,20 @@ public class TxtPage extends OCRPage<TxtPageStats> {
 
     @Override
     public Iterator<? extends OCRToken> getTokenIterator() {
-        return _tokens.iterator();
+        return new AbstractIterator<TxtToken>() {
+            private int _tokenIndex = 0;
+
+            @Override
+            protected TxtToken computeNext() {
+                if (_tokenIndex >= _tokenOffsets.length)
+                    return endOfData();
+
+                TxtToken token = new TxtToken(_text, _tokenOffsets[_tokenIndex], _tokenOffsets[_tokenIndex + 1]);
+                _tokenIndex += 2;
+
+                return token;
+            }
+        };
     }
 
     public String getPageId() {
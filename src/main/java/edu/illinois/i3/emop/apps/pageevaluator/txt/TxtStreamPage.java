@@ -0,0 +1,155 @@
+package edu.illinois.i3.emop.apps.pageevaluator.txt;
+
+import com.google.common.collect.AbstractIterator;
+import edu.illinois.i3.emop.apps.pageevaluator.OCRPage;
+import opennlp.tools.tokenize.Tokenizer;
+import opennlp.tools.util.Span;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+
+/**
+ * A text page read line by line, as an alternative to {@link TxtPage}.
+ * Hyphenated words broken across lines are joined and the lines are tokenized as they are read, so that only the
+ * current (joined) line is ever held in memory. The tokens are the same as those produced by {@link TxtPage},
+ * provided the tokenizer does not look across line breaks (as is the case for the simple and whitespace tokenizers).
+ * The token iterator can only be obtained once, and the page reader must not be closed before the tokens have been consumed.
+ */
+public class TxtStreamPage extends OCRPage<TxtPageStats> {
+
+    private final String _pageId;
+    private final BufferedReader _reader;
+    private final Tokenizer _tokenizer;
+    private boolean _tokensConsumed;
+
+    private TxtStreamPage(String pageId, BufferedReader reader, Tokenizer tokenizer) {
+        _pageId = pageId;
+        _reader = reader;
+        _tokenizer = tokenizer;
+    }
+
+    public static TxtStreamPage parse(Reader pageReader, String pageId, Tokenizer tokenizer) {
+        BufferedReader reader = (pageReader instanceof BufferedReader) ?
+            (BufferedReader) pageReader : new BufferedReader(pageReader);
+
+        return new TxtStreamPage(pageId, reader, tokenizer);
+    }
+
+    public String getPageId() {
+        return _pageId;
+    }
+
+    @Override
+    public Iterator<TxtToken> getTokenIterator() {
+        if (_tokensConsumed)
+            throw new IllegalStateException("The tokens of a streamed page can only be iterated once");
+
+        _tokensConsumed = true;
+
+        return new TxtStreamTokenIterator();
+    }
+
+    /**
+     * Applies the same hyphen joining as {@link TxtPage}, i.e. the replacement of (\S*\p{L})-\n(\p{L}\S*)\s* by $1$2\n,
+     * one line at a time: a line ending with a letter followed by '-' is joined with the first word of the next line,
+     * if that starts with a letter, and the rest of that line (if any) becomes a line of its own. A line whose only word
+     * was joined to the previous line cannot itself be joined to the next line, because the regular expression has
+     * already consumed its line break.
+     */
+    private class TxtStreamTokenIterator extends AbstractIterator<TxtToken> {
+
+        private String _pendingLine;
+        private String _line;
+        // the offset of the line in the page text of TxtPage, i.e. the joined lines, each followed by a line break
+        private int _lineOffset;
+        private Span[] _tokenSpans = new Span[0];
+        private int _tokenIndex;
+        private boolean _endOfInput;
+
+        @Override
+        protected TxtToken computeNext() {
+            while (_tokenIndex >= _tokenSpans.length) {
+                if (_line != null)
+                    _lineOffset += _line.length() + 1;
+                if (!nextLine())
+                    return endOfData();
+
+                _tokenSpans = _tokenizer.tokenizePos(_line);
+                _tokenIndex = 0;
+            }
+
+            Span span = _tokenSpans[_tokenIndex++];
+
+            return new TxtToken(_line, span.getStart(), span.getEnd(), _lineOffset);
+        }
+
+        // sets _line to the next joined line to tokenize, returning false at the end of the page
+        private boolean nextLine() {
+            while (!_endOfInput) {
+                String line = readLine();
+                if (line == null) {
+                    _endOfInput = true;
+                    break;
+                }
+
+                if (_pendingLine == null) {
+                    _pendingLine = line;
+                    continue;
+                }
+
+                if (!endsWithHyphenatedWord(_pendingLine) || !Character.isLetter(line.codePointAt(0))) {
+                    _line = _pendingLine;
+                    _pendingLine = line;
+                    return true;
+                }
+
+                int wordEnd = 0;
+                while (wordEnd < line.length() && !isRegexWhitespace(line.charAt(wordEnd)))
+                    wordEnd++;
+                int restStart = wordEnd;
+                while (restStart < line.length() && isRegexWhitespace(line.charAt(restStart)))
+                    restStart++;
+
+                _line = _pendingLine.substring(0, _pendingLine.length() - 1) + line.substring(0, wordEnd);
+                _pendingLine = restStart < line.length() ? line.substring(restStart) : null;
+                return true;
+            }
+
+            if (_pendingLine == null)
+                return false;
+
+            _line = _pendingLine;
+            _pendingLine = null;
+            return true;
+        }
+
+        // returns the next non-empty trimmed line, or null at the end of the page
+        private String readLine() {
+            try {
+                String line;
+                while ((line = _reader.readLine()) != null) {
+                    line = line.trim();
+                    if (!line.isEmpty())
+                        return line;
+                }
+
+                return null;
+            }
+            catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private static boolean endsWithHyphenatedWord(String line) {
+        int length = line.length();
+        return length >= 2 && line.charAt(length - 1) == '-' && Character.isLetter(line.codePointBefore(length - 1));
+    }
+
+    // \s
+    private static boolean isRegexWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+}
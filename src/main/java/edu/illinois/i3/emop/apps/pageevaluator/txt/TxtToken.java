@@ -1,20 +1,51 @@
 package edu.illinois.i3.emop.apps.pageevaluator.txt;
 
 import edu.illinois.i3.emop.apps.pageevaluator.OCRToken;
+import edu.illinois.i3.emop.apps.pageevaluator.TextSpan;
 
 public class TxtToken implements OCRToken {
 
-    private final String _token;
+    private final CharSequence _token;
+    private final int _offset;
 
     public TxtToken(String token) {
         _token = token;
+        _offset = -1;
+    }
+
+    public TxtToken(CharSequence pageText, int start, int end) {
+        this(pageText, start, end, 0);
+    }
+
+    /**
+     * @param text The text of the page, or of a part of it
+     * @param start The start of the token in the text
+     * @param end The end of the token in the text
+     * @param textOffset The offset of the text in the page text
+     */
+    public TxtToken(CharSequence text, int start, int end, int textOffset) {
+        _token = new TextSpan(text, start, end);
+        _offset = textOffset + start;
     }
 
     @Override
     public String getText() {
+        return _token.toString();
+    }
+
+    @Override
+    public CharSequence getTextView() {
         return _token;
     }
 
+    /**
+     * @return The offset of the token in the page text (the trimmed non-blank lines of the page, each followed by a
+     *         line break, with the words hyphenated across lines joined), or -1 if unknown
+     */
+    public int getOffset() {
+        return _offset;
+    }
+
     @Override
     public boolean isLastTokenOnLine() {
         return false;
@@ -0,0 +1,92 @@
+package edu.illinois.i3.emop.apps.pageevaluator.classifier;
+
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that {@link FastTokenClassifier} classifies tokens as the reference {@link RegexTokenClassifier} does
+ */
+public class FastTokenClassifierTest {
+
+    private static final long SEED = 20141107L;
+    private static final int TOKEN_COUNT = 200000;
+    private static final int MAX_TOKEN_LENGTH = 12;
+
+    // letters (including the long s, accented and non Latin ones), digits, punctuation, currency signs and separators
+    private static final String[] ALPHABET = {
+            "a", "e", "t", "s", "A", "T", "\u017f", "\u00e9", "\u00c9", "\u00df", "\u03b1", "\u0436",
+            "0", "1", "7", "\u0662", "\u00bd",
+            ".", ",", "-", "/", "%", "'", "!", "?", "(", ")", "\"", ";", ":",
+            "$", "\u00a3", "\u20ac",
+            "\u2014", "\u201c", "_", "~",
+            // combining marks and the letters whose lowercasing is context sensitive, delegated to the reference
+            "\u0301", "\u0308", "\u0130", "\u03a3"
+    };
+
+    // the tokens that the fast classifier delegates to the reference classifier
+    private static final String[] FALLBACK_TOKENS = {
+            // combining marks
+            "e\u0301", "cafe\u0301", "e\u0301e\u0301e\u0301e\u0301", "a\u0308bc", "\u0301", "1\u0301",
+            // capital I with dot above and capital sigma, whose lowercasing is context sensitive
+            "\u0130", "\u0130stanbul", "\u03a3", "\u039f\u0394\u039f\u03a3", "\u03a3\u03a3\u03a3\u03a3",
+            // trailing line terminators
+            "word\n", "word\r", "a\n", ".\n", "12\n", "word\u2028", "word\u0085"
+    };
+
+    @Test
+    public void testRandomTokens() {
+        Random random = new Random(SEED);
+        TokenClassifier fastClassifier = new FastTokenClassifier();
+        TokenClassifier referenceClassifier = new RegexTokenClassifier();
+        for (int i = 0; i < TOKEN_COUNT; i++) {
+            String token = randomToken(random);
+            assertEquals(token, referenceClassifier.classify(token), fastClassifier.classify(token));
+        }
+    }
+
+    @Test
+    public void testFallbackTokens() {
+        assertFallbackTokens();
+    }
+
+    @Test
+    public void testLocaleSensitiveLowercase() {
+        Locale defaultLocale = Locale.getDefault();
+        try {
+            for (String language : new String[] { "tr", "az", "lt" }) {
+                Locale.setDefault(new Locale(language));
+                assertFallbackTokens();
+                assertEquals(new RegexTokenClassifier().classify("TITLE"), new FastTokenClassifier().classify("TITLE"));
+                assertEquals(new RegexTokenClassifier().classify("IIII"), new FastTokenClassifier().classify("IIII"));
+            }
+        }
+        finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    private static void assertFallbackTokens() {
+        TokenClassifier fastClassifier = new FastTokenClassifier();
+        TokenClassifier referenceClassifier = new RegexTokenClassifier();
+        for (String token : FALLBACK_TOKENS)
+            assertEquals(token, referenceClassifier.classify(token), fastClassifier.classify(token));
+    }
+
+    private static String randomToken(Random random) {
+        StringBuilder token = new StringBuilder();
+        int length = 1 + random.nextInt(MAX_TOKEN_LENGTH);
+        while (token.length() < length) {
+            String c = ALPHABET[random.nextInt(ALPHABET.length)];
+            // runs of repeated characters
+            int repeat = random.nextInt(8) == 0 ? 2 + random.nextInt(4) : 1;
+            for (int i = 0; i < repeat; i++)
+                token.append(c);
+        }
+
+        return token.toString();
+    }
+}
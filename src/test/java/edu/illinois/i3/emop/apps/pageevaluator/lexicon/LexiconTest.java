@@ -0,0 +1,70 @@
+package edu.illinois.i3.emop.apps.pageevaluator.lexicon;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LexiconTest {
+
+    @Rule
+    public TemporaryFolder _tmpFolder = new TemporaryFolder();
+
+    private Lexicon _lexicon;
+
+    @Before
+    public void setUp() throws IOException {
+        LexiconBuilder builder = new LexiconBuilder();
+        for (String word : new String[] { "the", "word", "book", "best" })
+            builder.add(word);
+
+        File lexiconFile = _tmpFolder.newFile("lexicon.bin");
+        builder.write(lexiconFile);
+        _lexicon = Lexicon.open(lexiconFile);
+    }
+
+    @Test
+    public void testContains() {
+        assertTrue(_lexicon.contains("the"));
+        assertTrue(_lexicon.contains("Word"));
+        // the long s is read as s
+        assertTrue(_lexicon.contains("be\u017ft"));
+        assertFalse(_lexicon.contains("words"));
+    }
+
+    @Test
+    public void testOneEditAway() {
+        // substitutions
+        assertTrue(_lexicon.isNear("tbe"));
+        assertTrue(_lexicon.isNear("wore"));
+        // insertions
+        assertTrue(_lexicon.isNear("thee"));
+        assertTrue(_lexicon.isNear("xword"));
+        assertTrue(_lexicon.isNear("wordx"));
+        assertTrue(_lexicon.isNear("be\u017fts"));
+        // deletions
+        assertTrue(_lexicon.isNear("wrd"));
+        assertTrue(_lexicon.isNear("bok"));
+        // transpositions
+        assertTrue(_lexicon.isNear("hte"));
+        assertTrue(_lexicon.isNear("wodr"));
+    }
+
+    @Test
+    public void testTwoEditsAway() {
+        // one deletion plus an unrelated insertion
+        assertFalse(_lexicon.isNear("hex"));
+        assertFalse(_lexicon.isNear("ordx"));
+        assertFalse(_lexicon.isNear("xwor"));
+        // two substitutions, and an insertion next to a deletion
+        assertFalse(_lexicon.isNear("tax"));
+        assertFalse(_lexicon.isNear("xwrd"));
+        assertFalse(_lexicon.isNear("wdro"));
+    }
+}